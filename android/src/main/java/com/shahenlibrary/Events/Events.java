@@ -12,4 +12,8 @@ public class Events {
     public static final String ERROR_TRIM = "error";
     public static final String ORIENTATION = "orientation";
     public static final String SIZE = "size";
+    public static final String FFMPEG_PROGRESS = "ffmpegProgress";
+    public static final String FFMPEG_SEGMENT_COMPLETE = "ffmpegSegmentComplete";
+    public static final String PREVIEW_IMAGE = "previewImage";
+    public static final String PREVIEW_IMAGES_COMPLETE = "previewImagesComplete";
 }
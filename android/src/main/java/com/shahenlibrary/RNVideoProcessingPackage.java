@@ -36,10 +36,24 @@ import com.shahenlibrary.Trimmer.TrimmerManager;
 import com.shahenlibrary.VideoPlayer.VideoPlayerViewManager;
 
 public class RNVideoProcessingPackage implements ReactPackage {
+    private final boolean installFfmpegOnStartup;
+
+    public RNVideoProcessingPackage() {
+      this(true);
+    }
+
+    /**
+     * Pass false to defer installing the ffmpeg binary until the first ffmpeg job or
+     * an explicit warm-up from JS, so apps that rarely edit video don't pay for it at startup.
+     */
+    public RNVideoProcessingPackage(boolean installFfmpegOnStartup) {
+      this.installFfmpegOnStartup = installFfmpegOnStartup;
+    }
+
     @Override
     public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
       return Arrays.<NativeModule>asList(
-              new TrimmerManager(reactContext)
+              new TrimmerManager(reactContext, installFfmpegOnStartup)
       );
     }
 
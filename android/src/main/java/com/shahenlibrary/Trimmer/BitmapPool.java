@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Shahen Hovhannisyan.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.shahenlibrary.Trimmer;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Small pool of mutable ARGB_8888 bitmaps, grouped by size.
+ *
+ * A filmstrip needs many bitmaps of exactly the same size one after the other. Reusing them
+ * keeps memory flat while frames are generated instead of leaving a trail of garbage behind.
+ */
+class BitmapPool {
+
+  private static final int MAX_POOLED_PER_SIZE = 2 * PreviewImageExtractor.MAX_RETRIEVERS;
+
+  private static final BitmapPool instance = new BitmapPool();
+
+  private final Map<Long, ArrayDeque<Bitmap>> pools = new HashMap<Long, ArrayDeque<Bitmap>>();
+
+  static BitmapPool getInstance() {
+    return instance;
+  }
+
+  @NonNull
+  synchronized Bitmap acquire(int width, int height) {
+    ArrayDeque<Bitmap> pool = pools.get(getSizeKey(width, height));
+    Bitmap bmp = pool != null ? pool.poll() : null;
+    if (bmp == null) {
+      return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+    bmp.eraseColor(Color.TRANSPARENT);
+    return bmp;
+  }
+
+  /** Hands {@code bmp} back for reuse, or recycles it when the pool is full or it doesn't fit. */
+  synchronized void release(@NonNull Bitmap bmp) {
+    if (bmp.isRecycled()) {
+      return;
+    }
+    if (!bmp.isMutable() || bmp.getConfig() != Bitmap.Config.ARGB_8888) {
+      bmp.recycle();
+      return;
+    }
+    Long key = getSizeKey(bmp.getWidth(), bmp.getHeight());
+    ArrayDeque<Bitmap> pool = pools.get(key);
+    if (pool == null) {
+      pool = new ArrayDeque<Bitmap>();
+      pools.put(key, pool);
+    }
+    if (pool.size() >= MAX_POOLED_PER_SIZE) {
+      bmp.recycle();
+      return;
+    }
+    pool.offer(bmp);
+  }
+
+  /**
+   * Rotates {@code src} by {@code degrees} (a multiple of 90) into a pooled bitmap and recycles
+   * {@code src}. Returns {@code src} itself when there is nothing to rotate.
+   */
+  @NonNull
+  Bitmap rotate(@NonNull Bitmap src, int degrees) {
+    int normalized = ((degrees % 360) + 360) % 360;
+    if (normalized == 0) {
+      return src;
+    }
+    boolean swap = normalized == 90 || normalized == 270;
+    int width = swap ? src.getHeight() : src.getWidth();
+    int height = swap ? src.getWidth() : src.getHeight();
+
+    // NOTE: ROTATE AROUND THE CENTER, THEN MOVE THE RESULT BACK INTO THE TARGET
+    Matrix matrix = new Matrix();
+    matrix.postTranslate(-src.getWidth() / 2f, -src.getHeight() / 2f);
+    matrix.postRotate(normalized);
+    matrix.postTranslate(width / 2f, height / 2f);
+
+    Bitmap target = acquire(width, height);
+    new Canvas(target).drawBitmap(src, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+    release(src);
+    return target;
+  }
+
+  private static Long getSizeKey(int width, int height) {
+    return ((long) width << 32) | (height & 0xffffffffL);
+  }
+}
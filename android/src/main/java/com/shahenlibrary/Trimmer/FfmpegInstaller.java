@@ -0,0 +1,359 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Shahen Hovhannisyan.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.shahenlibrary.Trimmer;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.shahenlibrary.utils.SourceFingerprint;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Copies the ffmpeg binary from the assets into the app's files dir and makes it executable.
+ *
+ * A stamp file next to the binary records its hash, size and mtime, plus the app version it
+ * was extracted for. As long as the stamp matches, checking the install is a single
+ * {@code stat}. The binary is only hashed and copied again after an app update, or when it
+ * was changed or removed.
+ *
+ * The binary is picked from {@code assets/<abi>/ffmpeg} for the first ABI the device supports
+ * that has one, in the device's preference order, so arm64 and x86 devices get a native build
+ * when the app ships one and fall back to the 32-bit ARM build otherwise.
+ *
+ * Installation runs once, on a thread of its own, and is shared through a future: ffmpeg jobs
+ * wait for it before they exec the binary, so a job submitted right after startup no longer
+ * races the copy. A failed install is retried by the next caller.
+ */
+class FfmpegInstaller {
+
+  private static final String LOG_TAG = "RNFfmpegInstaller";
+  static final String FFMPEG_FILE_NAME = "ffmpeg";
+  static final String FFMPEG_SHA1 = "77ae380db4bf56d011eca9ef9f20d397c0467aec";
+  static final String DEFAULT_ABI = "armeabi-v7a";
+  // NOTE: KNOWN HASHES PER ABI. FOR OTHER ABIS THE HASH OF THE EXTRACTED ASSET IS TRUSTED
+  private static final Map<String, String> EXPECTED_SHA1 = Collections.singletonMap(DEFAULT_ABI, FFMPEG_SHA1);
+  private static final String STAMP_FILE_NAME = "ffmpeg.stamp";
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+  private static final ExecutorService installExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(@NonNull Runnable r) {
+      Thread thread = new Thread(r, "RNVideoProcessing-ffmpeg-install");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  // NOTE: GUARDED BY THE CLASS LOCK
+  private static FutureTask<Boolean> installTask;
+
+  /**
+   * Starts installing in the background, unless an install is already running or has succeeded.
+   * Safe to call from any thread, including the UI thread.
+   */
+  static synchronized Future<Boolean> installAsync(@NonNull Context ctx) {
+    if (installTask != null && !(installTask.isDone() && !isSuccessful(installTask))) {
+      return installTask;
+    }
+    final Context appCtx = ctx.getApplicationContext() != null ? ctx.getApplicationContext() : ctx;
+    installTask = new FutureTask<Boolean>(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return install(appCtx);
+      }
+    });
+    installExecutor.execute(installTask);
+    return installTask;
+  }
+
+  /** Starts the install if needed and blocks until it finished. Returns true when ffmpeg can be run. */
+  static boolean awaitInstall(@NonNull Context ctx) throws InterruptedException {
+    try {
+      return installAsync(ctx).get();
+    } catch (ExecutionException e) {
+      Log.d(LOG_TAG, "awaitInstall: " + e.toString());
+      return false;
+    }
+  }
+
+  /** True once an install finished successfully. Never blocks and never starts an install. */
+  static synchronized boolean isReady() {
+    return installTask != null && installTask.isDone() && isSuccessful(installTask);
+  }
+
+  /**
+   * Runs {@code callback} with the install result once it is known, starting the install if
+   * needed. The callback runs on the install thread, right after the install itself.
+   */
+  static void whenReady(@NonNull Context ctx, @NonNull final InstallCallback callback) {
+    final Future<Boolean> future = installAsync(ctx);
+    // NOTE: THE EXECUTOR IS SERIAL, SO THIS ONLY RUNS AFTER THE INSTALL AND "get" DOESN'T BLOCK
+    installExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        callback.onInstallFinished(isSuccessful(future));
+      }
+    });
+  }
+
+  interface InstallCallback {
+    void onInstallFinished(boolean success);
+  }
+
+  private static boolean isSuccessful(Future<Boolean> future) {
+    try {
+      return Boolean.TRUE.equals(future.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException e) {
+      return false;
+    }
+  }
+
+  /** Returns true when the binary is in place and executable. Blocks, call it off the UI thread. */
+  static boolean install(@NonNull Context ctx) {
+    File ffmpegFile = new File(ctx.getFilesDir(), FFMPEG_FILE_NAME);
+    File stampFile = getStampFile(ctx);
+    PackageInfo packageInfo = getPackageInfo(ctx);
+    String abi = selectAbi(ctx);
+    String expectedSha1 = EXPECTED_SHA1.get(abi);
+
+    JSONObject stamp = readStamp(stampFile);
+    if (stamp != null && isStampValid(stamp, ffmpegFile, abi, expectedSha1, packageInfo)) {
+      if (ffmpegFile.canExecute() || ffmpegFile.setExecutable(true, true)) {
+        return true;
+      }
+    }
+
+    try {
+      String sha1;
+      if (expectedSha1 != null && ffmpegFile.isFile() && expectedSha1.equalsIgnoreCase(Trimmer.getSha1FromFile(ffmpegFile))) {
+        // NOTE: NO (VALID) STAMP YET, BUT THE BINARY IS THE RIGHT ONE. NO NEED TO COPY IT AGAIN
+        sha1 = expectedSha1;
+      } else {
+        Log.d(LOG_TAG, "install: extracting " + FFMPEG_FILE_NAME + " for " + abi + " from assets");
+        sha1 = extract(ctx, abi + File.separator + FFMPEG_FILE_NAME, ffmpegFile);
+        if (expectedSha1 != null && !expectedSha1.equalsIgnoreCase(sha1)) {
+          Log.d(LOG_TAG, "install: unexpected " + FFMPEG_FILE_NAME + " hash " + sha1);
+        }
+      }
+
+      // NOTE: SAME AS "chmod 700", WITHOUT SPAWNING A PROCESS FOR IT
+      if (!ffmpegFile.setExecutable(true, true)) {
+        Log.d(LOG_TAG, "install: failed to make " + FFMPEG_FILE_NAME + " executable");
+        return false;
+      }
+
+      writeStamp(stampFile, ffmpegFile, sha1, abi, packageInfo);
+      return true;
+    } catch (IOException e) {
+      Log.d(LOG_TAG, "install: failed to copy ffmpeg. " + e.toString());
+      return false;
+    }
+  }
+
+  /** ABIs the device can run, most preferred first. */
+  @SuppressWarnings("deprecation")
+  static List<String> getSupportedAbis() {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+      return Arrays.asList(Build.SUPPORTED_ABIS);
+    }
+    List<String> abis = new ArrayList<String>();
+    if (Build.CPU_ABI != null && Build.CPU_ABI.length() > 0) {
+      abis.add(Build.CPU_ABI);
+    }
+    if (Build.CPU_ABI2 != null && Build.CPU_ABI2.length() > 0 && !abis.contains(Build.CPU_ABI2)) {
+      abis.add(Build.CPU_ABI2);
+    }
+    return abis;
+  }
+
+  /**
+   * First supported ABI that has an ffmpeg asset. Falls back to {@link #DEFAULT_ABI}, which is
+   * what was always installed before, if none of them does.
+   */
+  static String selectAbi(@NonNull Context ctx) {
+    for (String abi : getSupportedAbis()) {
+      try {
+        String[] files = ctx.getAssets().list(abi);
+        if (files != null && Arrays.asList(files).contains(FFMPEG_FILE_NAME)) {
+          return abi;
+        }
+      } catch (IOException e) {
+        Log.d(LOG_TAG, "selectAbi: " + e.toString());
+      }
+    }
+    Log.d(LOG_TAG, "selectAbi: no ffmpeg asset for " + getSupportedAbis() + ", using " + DEFAULT_ABI);
+    return DEFAULT_ABI;
+  }
+
+  /**
+   * What the last successful install recorded (sha1, size, mtime, abi, versionCode), or null
+   * if nothing was installed yet.
+   */
+  @Nullable
+  static JSONObject readStamp(@NonNull Context ctx) {
+    return readStamp(getStampFile(ctx));
+  }
+
+  private static File getStampFile(Context ctx) {
+    return new File(ctx.getFilesDir(), STAMP_FILE_NAME);
+  }
+
+  private static boolean isStampValid(JSONObject stamp, File ffmpegFile, String abi, @Nullable String expectedSha1, @Nullable PackageInfo packageInfo) {
+    if (packageInfo == null || !ffmpegFile.isFile()) {
+      return false;
+    }
+    String sha1 = stamp.optString("sha1");
+    return (expectedSha1 != null ? expectedSha1.equalsIgnoreCase(sha1) : sha1.length() > 0)
+      && abi.equals(stamp.optString("abi"))
+      && stamp.optLong("size", -1) == ffmpegFile.length()
+      && stamp.optLong("mtime", -1) == ffmpegFile.lastModified()
+      && stamp.optInt("versionCode", -1) == packageInfo.versionCode
+      // NOTE: DEBUG REINSTALLS KEEP THE VERSION CODE, THE UPDATE TIME STILL CHANGES
+      && stamp.optLong("lastUpdateTime", -1) == packageInfo.lastUpdateTime;
+  }
+
+  /**
+   * Copies the asset into {@code target} through a temp file, so an interrupted copy never
+   * leaves a truncated binary behind. Returns the SHA1 of what was copied.
+   */
+  private static String extract(Context ctx, String assetPath, File target) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e.toString());
+    }
+
+    File temp = new File(target.getPath() + ".tmp");
+    InputStream in = ctx.getAssets().open(assetPath);
+    try {
+      OutputStream out = new FileOutputStream(temp);
+      try {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+          out.write(buffer, 0, n);
+          digest.update(buffer, 0, n);
+        }
+      } finally {
+        out.close();
+      }
+    } finally {
+      in.close();
+    }
+
+    if (!temp.renameTo(target)) {
+      temp.delete();
+      throw new IOException("Failed to move " + temp.getPath() + " to " + target.getPath());
+    }
+    return SourceFingerprint.toHex(digest.digest());
+  }
+
+  @Nullable
+  private static JSONObject readStamp(File stampFile) {
+    if (!stampFile.isFile()) {
+      return null;
+    }
+    try {
+      InputStream is = new FileInputStream(stampFile);
+      try {
+        byte[] data = new byte[(int) stampFile.length()];
+        int offset = 0;
+        int n;
+        while (offset < data.length && (n = is.read(data, offset, data.length - offset)) != -1) {
+          offset += n;
+        }
+        return new JSONObject(new String(data, 0, offset, Charset.forName("UTF-8")));
+      } finally {
+        is.close();
+      }
+    } catch (Exception e) {
+      Log.d(LOG_TAG, "readStamp: " + e.toString());
+      return null;
+    }
+  }
+
+  private static void writeStamp(File stampFile, File ffmpegFile, String sha1, String abi, @Nullable PackageInfo packageInfo) {
+    try {
+      JSONObject stamp = new JSONObject();
+      stamp.put("sha1", sha1);
+      stamp.put("size", ffmpegFile.length());
+      stamp.put("mtime", ffmpegFile.lastModified());
+      stamp.put("abi", abi);
+      stamp.put("versionCode", packageInfo != null ? packageInfo.versionCode : -1);
+      stamp.put("lastUpdateTime", packageInfo != null ? packageInfo.lastUpdateTime : -1);
+
+      OutputStream out = new FileOutputStream(stampFile);
+      try {
+        out.write(stamp.toString().getBytes(Charset.forName("UTF-8")));
+      } finally {
+        out.close();
+      }
+    } catch (IOException | JSONException e) {
+      Log.d(LOG_TAG, "writeStamp: " + e.toString());
+    }
+  }
+
+  @Nullable
+  private static PackageInfo getPackageInfo(Context ctx) {
+    try {
+      return ctx.getPackageManager().getPackageInfo(ctx.getPackageName(), 0);
+    } catch (Exception e) {
+      Log.d(LOG_TAG, "getPackageInfo: " + e.toString());
+      return null;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Shahen Hovhannisyan.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.shahenlibrary.Trimmer;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dedicated executors for ffmpeg jobs.
+ *
+ * Jobs used to go through {@code AsyncTask.execute()}, i.e. the app-wide serial executor, so a
+ * short trim could sit behind a long compress (or behind any other AsyncTask in the app).
+ * Here interactive and background jobs run in two lanes sized from the core count. Background
+ * jobs can never take all the slots, so a running compress doesn't hold up a trim the user is
+ * waiting for. Submissions are rejected once the queues are full.
+ */
+class FfmpegJobScheduler {
+
+  private static final String LOG_TAG = "RNFfmpegJobScheduler";
+
+  enum Priority {
+    INTERACTIVE,
+    BACKGROUND;
+
+    static Priority fromString(@Nullable String value, @NonNull Priority defaultPriority) {
+      if (value == null) {
+        return defaultPriority;
+      }
+      for (Priority priority : values()) {
+        if (priority.name().equalsIgnoreCase(value)) {
+          return priority;
+        }
+      }
+      return defaultPriority;
+    }
+  }
+
+  private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+  // NOTE: EVERY FFMPEG PROCESS IS MULTI-THREADED ITSELF, SO KEEP THE NUMBER OF PROCESSES LOW
+  static final int MAX_CONCURRENT_JOBS = Math.max(1, Math.min(CPU_COUNT / 2, 3));
+  // NOTE: ONE SLOT LESS THAN THE INTERACTIVE LANE, BUT AT LEAST ONE, SO BOTH LANES ALWAYS MAKE PROGRESS
+  static final int MAX_BACKGROUND_JOBS = Math.max(1, MAX_CONCURRENT_JOBS - 1);
+  static final int MAX_QUEUED_JOBS = 16;
+
+  private static FfmpegJobScheduler instance;
+
+  private final ThreadPoolExecutor interactiveExecutor;
+  private final ThreadPoolExecutor backgroundExecutor;
+
+  private FfmpegJobScheduler() {
+    interactiveExecutor = createExecutor(MAX_CONCURRENT_JOBS, "interactive");
+    backgroundExecutor = createExecutor(MAX_BACKGROUND_JOBS, "background");
+    Log.d(LOG_TAG, "max concurrent jobs: " + MAX_CONCURRENT_JOBS + " interactive, " + MAX_BACKGROUND_JOBS + " background, max queued jobs: " + MAX_QUEUED_JOBS);
+  }
+
+  private static ThreadPoolExecutor createExecutor(int threads, final String lane) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+      threads,
+      threads,
+      30,
+      TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(),
+      new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+          return new Thread(r, "RNVideoProcessing-ffmpeg-" + lane + " #" + count.getAndIncrement());
+        }
+      }
+    );
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  static synchronized FfmpegJobScheduler getInstance() {
+    if (instance == null) {
+      instance = new FfmpegJobScheduler();
+    }
+    return instance;
+  }
+
+  /**
+   * Queues {@code job} in the lane of {@code priority}. Throws {@link RejectedExecutionException}
+   * when {@link #MAX_QUEUED_JOBS} jobs are already waiting, so the caller can report
+   * back-pressure instead of piling up work.
+   */
+  synchronized void submit(@NonNull Runnable job, @NonNull Priority priority) throws RejectedExecutionException {
+    if (interactiveExecutor.getQueue().size() + backgroundExecutor.getQueue().size() >= MAX_QUEUED_JOBS) {
+      throw new RejectedExecutionException("Too many ffmpeg jobs queued (" + MAX_QUEUED_JOBS + ")");
+    }
+    (priority == Priority.INTERACTIVE ? interactiveExecutor : backgroundExecutor).execute(job);
+  }
+
+  /**
+   * Drops {@code job} from the queue if it has not started yet.
+   * Returns {@code false} when it is already running (or already done).
+   */
+  synchronized boolean remove(@NonNull Runnable job) {
+    return interactiveExecutor.remove(job) || backgroundExecutor.remove(job);
+  }
+
+  /**
+   * Encoder threads for a job that is starting now: the cores split between the jobs that are
+   * running, so concurrent jobs don't oversubscribe the CPU and a lone job can use all of it.
+   */
+  int getThreadsPerJob() {
+    int activeJobs = Math.max(1, interactiveExecutor.getActiveCount() + backgroundExecutor.getActiveCount());
+    return Math.max(1, CPU_COUNT / activeJobs);
+  }
+}
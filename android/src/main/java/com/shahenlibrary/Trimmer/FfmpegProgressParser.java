@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Shahen Hovhannisyan.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.shahenlibrary.Trimmer;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Incremental parser for the output of {@code ffmpeg -progress pipe:1}.
+ *
+ * ffmpeg writes blocks of {@code key=value} lines, each block terminated by
+ * {@code progress=continue} or {@code progress=end}. Lines are fed one at a time and a
+ * snapshot is returned whenever a block is complete.
+ */
+class FfmpegProgressParser {
+
+  static class Progress {
+    long encodedTimeMs;
+    double fps;
+    double speed;
+    long totalSize;
+    boolean ended;
+  }
+
+  private long encodedTimeMs = 0;
+  private double fps = 0;
+  private double speed = 0;
+  private long totalSize = 0;
+
+  @Nullable
+  Progress feed(@Nullable String line) {
+    if (line == null) {
+      return null;
+    }
+    int separator = line.indexOf('=');
+    if (separator <= 0) {
+      return null;
+    }
+    String key = line.substring(0, separator).trim();
+    String value = line.substring(separator + 1).trim();
+
+    // NOTE: "out_time_ms" IS ACTUALLY IN MICROSECONDS (SAME AS "out_time_us" IN NEWER BUILDS)
+    if (key.equals("out_time_us") || key.equals("out_time_ms")) {
+      long us = parseLong(value, -1);
+      if (us >= 0) {
+        encodedTimeMs = us / 1000;
+      }
+    } else if (key.equals("fps")) {
+      fps = parseDouble(value, fps);
+    } else if (key.equals("speed")) {
+      // NOTE: "1.53x" OR "N/A"
+      speed = parseDouble(value.endsWith("x") ? value.substring(0, value.length() - 1) : value, speed);
+    } else if (key.equals("total_size")) {
+      totalSize = parseLong(value, totalSize);
+    } else if (key.equals("progress")) {
+      Progress progress = new Progress();
+      progress.encodedTimeMs = encodedTimeMs;
+      progress.fps = fps;
+      progress.speed = speed;
+      progress.totalSize = totalSize;
+      progress.ended = value.equals("end");
+      return progress;
+    }
+    return null;
+  }
+
+  private static long parseLong(String value, long fallback) {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return fallback;
+    }
+  }
+
+  private static double parseDouble(String value, double fallback) {
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      return fallback;
+    }
+  }
+}
@@ -0,0 +1,300 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Shahen Hovhannisyan.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.shahenlibrary.Trimmer;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+import com.shahenlibrary.utils.SourceFingerprint;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Persistent cache of trim/crop/compress outputs, used only when a call passes {@code cache: true}.
+ *
+ * Entries are keyed on the {@link SourceFingerprint} of the input plus the normalized options,
+ * so exporting the same clip with the same settings again resolves with the previous output
+ * instead of running ffmpeg. The index survives restarts. The outputs themselves belong to the
+ * caller, so the cache never deletes them: once they add up to more than {@link #MAX_CACHE_BYTES}
+ * the least recently used entries are only forgotten, and an entry whose file was deleted or
+ * changed since is dropped on lookup.
+ */
+class OutputCache {
+
+  private static final String LOG_TAG = "RNOutputCache";
+  private static final String INDEX_FILE_NAME = "rnvp-output-cache.json";
+  static final long MAX_CACHE_BYTES = 512L * 1024 * 1024;
+
+  // NOTE: OPTIONS THAT DON'T CHANGE THE OUTPUT MUST NOT CHANGE THE KEY
+  private static final Set<String> IGNORED_OPTIONS = new HashSet<String>(Arrays.asList("jobId", "priority", "threads", "cache"));
+
+  static class Entry {
+    final String path;
+    final long size;
+    @Nullable final JSONObject extras;
+
+    Entry(String path, long size, @Nullable JSONObject extras) {
+      this.path = path;
+      this.size = size;
+      this.extras = extras;
+    }
+  }
+
+  private static OutputCache instance;
+
+  private final File indexFile;
+  // NOTE: ACCESS-ORDERED, SO ITERATION STARTS AT THE LEAST RECENTLY USED ENTRY
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private long totalBytes = 0;
+
+  private OutputCache(Context ctx) {
+    indexFile = new File(ctx.getFilesDir(), INDEX_FILE_NAME);
+    load();
+  }
+
+  static synchronized OutputCache getInstance(@NonNull Context ctx) {
+    if (instance == null) {
+      instance = new OutputCache(ctx.getApplicationContext() != null ? ctx.getApplicationContext() : ctx);
+    }
+    return instance;
+  }
+
+  /**
+   * Returns null unless caching was asked for with {@code cache: true}, or when the source
+   * can't be fingerprinted (e.g. remote URLs).
+   */
+  @Nullable
+  static String buildKey(@NonNull Context ctx, @NonNull String operation, @NonNull String source, @Nullable ReadableMap options) {
+    if (options == null || !options.hasKey("cache") || options.isNull("cache") || !options.getBoolean("cache")) {
+      return null;
+    }
+    SourceFingerprint fingerprint = SourceFingerprint.compute(ctx, source);
+    if (fingerprint == null) {
+      return null;
+    }
+
+    StringBuilder key = new StringBuilder();
+    key.append(operation).append('|').append(fingerprint.toString()).append('|');
+    if (options != null) {
+      TreeMap<String, Object> normalized = new TreeMap<String, Object>();
+      for (Map.Entry<String, Object> option : options.toHashMap().entrySet()) {
+        if (!IGNORED_OPTIONS.contains(option.getKey()) && !option.getKey().equals("source")) {
+          normalized.put(option.getKey(), normalize(option.getValue()));
+        }
+      }
+      key.append(normalized.toString());
+    }
+
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA1");
+      return SourceFingerprint.toHex(digest.digest(key.toString().getBytes(Charset.forName("UTF-8"))));
+    } catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Object normalize(Object value) {
+    if (value instanceof Map) {
+      TreeMap<String, Object> sorted = new TreeMap<String, Object>();
+      for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+        sorted.put(entry.getKey(), normalize(entry.getValue()));
+      }
+      return sorted;
+    }
+    if (value instanceof List) {
+      List<Object> list = new ArrayList<Object>();
+      for (Object item : (List<Object>) value) {
+        list.add(normalize(item));
+      }
+      return list;
+    }
+    return value;
+  }
+
+  /**
+   * Returns the cached output for {@code key}, dropping the entry if its file has been
+   * deleted or changed since it was stored.
+   */
+  @Nullable
+  synchronized Entry get(@Nullable String key) {
+    if (key == null) {
+      return null;
+    }
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    File output = new File(entry.path);
+    if (!output.isFile() || output.length() != entry.size) {
+      Log.d(LOG_TAG, "get: stale entry for " + entry.path);
+      entries.remove(key);
+      totalBytes -= entry.size;
+      save();
+      return null;
+    }
+    // NOTE: THE HIT ONLY MOVES THE ENTRY IN MEMORY. THE NEW ORDER IS PERSISTED WITH THE NEXT "put",
+    // SO A HIT DOESN'T REWRITE THE WHOLE INDEX
+    return entry;
+  }
+
+  synchronized void put(@Nullable String key, @NonNull File output, @Nullable ReadableMap extras) {
+    if (key == null || !output.isFile()) {
+      return;
+    }
+    JSONObject extrasJson = null;
+    if (extras != null) {
+      extrasJson = new JSONObject(extras.toHashMap());
+    }
+    Entry previous = entries.put(key, new Entry(output.getAbsolutePath(), output.length(), extrasJson));
+    if (previous != null) {
+      totalBytes -= previous.size;
+    }
+    totalBytes += output.length();
+    evict();
+    save();
+  }
+
+  static void putExtras(@NonNull Entry entry, @NonNull WritableMap event) {
+    if (entry.extras == null) {
+      return;
+    }
+    Iterator<String> keys = entry.extras.keys();
+    while (keys.hasNext()) {
+      String key = keys.next();
+      Object value = entry.extras.opt(key);
+      if (value instanceof Number) {
+        event.putDouble(key, ((Number) value).doubleValue());
+      } else if (value instanceof Boolean) {
+        event.putBoolean(key, (Boolean) value);
+      } else if (value instanceof String) {
+        event.putString(key, (String) value);
+      }
+    }
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+    while (totalBytes > MAX_CACHE_BYTES && iterator.hasNext()) {
+      // NOTE: ONLY FORGET THE ENTRY. THE FILE WAS HANDED TO THE CALLER AND IS THEIRS TO DELETE
+      Entry entry = iterator.next().getValue();
+      iterator.remove();
+      totalBytes -= entry.size;
+    }
+  }
+
+  private void load() {
+    if (!indexFile.isFile()) {
+      return;
+    }
+    try {
+      JSONArray index = new JSONArray(readFile(indexFile));
+      for (int i = 0; i < index.length(); i++) {
+        JSONObject item = index.getJSONObject(i);
+        Entry entry = new Entry(item.getString("path"), item.getLong("size"), item.optJSONObject("extras"));
+        entries.put(item.getString("key"), entry);
+        totalBytes += entry.size;
+      }
+    } catch (Exception e) {
+      Log.d(LOG_TAG, "load: index is unreadable, starting empty. " + e.toString());
+      entries.clear();
+      totalBytes = 0;
+    }
+  }
+
+  private void save() {
+    JSONArray index = new JSONArray();
+    try {
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        JSONObject item = new JSONObject();
+        item.put("key", entry.getKey());
+        item.put("path", entry.getValue().path);
+        item.put("size", entry.getValue().size);
+        if (entry.getValue().extras != null) {
+          item.put("extras", entry.getValue().extras);
+        }
+        index.put(item);
+      }
+    } catch (JSONException e) {
+      Log.d(LOG_TAG, "save: " + e.toString());
+      return;
+    }
+
+    // NOTE: WRITE TO A TEMP FILE FIRST SO A CRASH NEVER LEAVES A TRUNCATED INDEX
+    File tempFile = new File(indexFile.getPath() + ".tmp");
+    try {
+      FileOutputStream fos = new FileOutputStream(tempFile);
+      try {
+        fos.write(index.toString().getBytes(Charset.forName("UTF-8")));
+      } finally {
+        fos.close();
+      }
+      if (!tempFile.renameTo(indexFile)) {
+        Log.d(LOG_TAG, "save: failed to replace index");
+      }
+    } catch (IOException e) {
+      Log.d(LOG_TAG, "save: " + e.toString());
+    }
+  }
+
+  private static String readFile(File file) throws IOException {
+    InputStream is = new FileInputStream(file);
+    try {
+      byte[] data = new byte[(int) file.length()];
+      int offset = 0;
+      int n;
+      while (offset < data.length && (n = is.read(data, offset, data.length - offset)) != -1) {
+        offset += n;
+      }
+      return new String(data, 0, offset, Charset.forName("UTF-8"));
+    } finally {
+      is.close();
+    }
+  }
+}
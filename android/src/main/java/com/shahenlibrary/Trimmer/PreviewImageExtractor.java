@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Shahen Hovhannisyan.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.shahenlibrary.Trimmer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.shahenlibrary.utils.VideoEdit;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import wseemann.media.FFmpegMediaMetadataRetriever;
+
+/**
+ * Extracts frames at many timestamps off the React Native module thread.
+ *
+ * A retriever decodes one frame at a time, so a small pool of them works on contiguous
+ * slices of the timestamps in parallel (contiguous, so every retriever keeps seeking forward).
+ * Requests themselves run one at a time on a coordinator thread, which bounds how many
+ * decoders and bitmaps are alive at once.
+ */
+class PreviewImageExtractor {
+
+  private static final String LOG_TAG = "RNPreviewImageExtractor";
+  private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+  // NOTE: EVERY RETRIEVER HOLDS ITS OWN DECODER, SO KEEP THE POOL SMALL
+  static final int MAX_RETRIEVERS = Math.max(1, Math.min(CPU_COUNT - 1, 3));
+
+  interface FrameHandler {
+    /**
+     * Called on a worker thread for every extracted frame. {@code frame} is null when the
+     * retriever had nothing at that timestamp. The handler owns {@code frame} and should
+     * recycle it (or hand it to {@link BitmapPool}) as soon as it is done with it.
+     */
+    void onFrame(int index, long timeUs, Bitmap frame);
+  }
+
+  private static final ExecutorService coordinator = Executors.newSingleThreadExecutor(new NamedThreadFactory("RNPreviewCoordinator"));
+  private static final ExecutorService workers = Executors.newFixedThreadPool(MAX_RETRIEVERS, new NamedThreadFactory("RNPreviewWorker"));
+
+  static void submit(@NonNull Runnable request) {
+    coordinator.execute(request);
+  }
+
+  /**
+   * Extracts a frame at every entry of {@code timesUs} and blocks until all of them are handled.
+   * Must be called from a {@link #submit} request, never from a worker. Once {@code cancelled}
+   * is set, workers stop before their next frame.
+   *
+   * With a {@code width} and {@code height} the decoder scales the frame (before rotation) itself,
+   * so a full-size frame is never allocated. 0 keeps the original size.
+   */
+  static void extract(@NonNull final Context ctx, @NonNull final String source, @NonNull final long[] timesUs, final int width, final int height, @NonNull final FrameHandler handler, @Nullable final AtomicBoolean cancelled) throws InterruptedException {
+    int slices = Math.min(MAX_RETRIEVERS, timesUs.length);
+    if (slices == 0) {
+      return;
+    }
+    final CountDownLatch done = new CountDownLatch(slices);
+    int sliceSize = (timesUs.length + slices - 1) / slices;
+    for (int slice = 0; slice < slices; slice++) {
+      final int from = slice * sliceSize;
+      final int to = Math.min(timesUs.length, from + sliceSize);
+      workers.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            extractSlice(ctx, source, timesUs, from, to, width, height, handler, cancelled);
+          } finally {
+            done.countDown();
+          }
+        }
+      });
+    }
+    done.await();
+  }
+
+  private static void extractSlice(Context ctx, String source, long[] timesUs, int from, int to, int width, int height, FrameHandler handler, @Nullable AtomicBoolean cancelled) {
+    FFmpegMediaMetadataRetriever retriever = new FFmpegMediaMetadataRetriever();
+    try {
+      if (VideoEdit.shouldUseURI(source)) {
+        retriever.setDataSource(ctx, Uri.parse(source));
+      } else {
+        retriever.setDataSource(source);
+      }
+      for (int i = from; i < to && (cancelled == null || !cancelled.get()); i++) {
+        Bitmap frame = width > 0 && height > 0
+          ? retriever.getScaledFrameAtTime(timesUs[i], width, height)
+          : retriever.getFrameAtTime(timesUs[i]);
+        handler.onFrame(i, timesUs[i], frame);
+      }
+    } catch (Exception e) {
+      Log.d(LOG_TAG, "extractSlice: failed for " + source + ". " + e.toString());
+    } finally {
+      retriever.release();
+    }
+  }
+
+  private static class NamedThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    NamedThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(@NonNull Runnable r) {
+      Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
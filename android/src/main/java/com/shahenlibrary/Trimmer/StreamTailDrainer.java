@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Shahen Hovhannisyan.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.shahenlibrary.Trimmer;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Drains a process stream on its own thread and keeps only its last {@code capacity} bytes.
+ *
+ * ffmpeg logs heavily to stderr. If nobody reads it while the process runs, the pipe buffer
+ * fills up and ffmpeg blocks forever. Memory stays constant no matter how much is written.
+ */
+class StreamTailDrainer extends Thread {
+
+  private static final String LOG_TAG = "RNStreamTailDrainer";
+  private static final int READ_BUFFER_SIZE = 4096;
+
+  private final InputStream stream;
+  private final byte[] ring;
+  private int position = 0;
+  private boolean wrapped = false;
+
+  StreamTailDrainer(InputStream stream, int capacity, String name) {
+    super(name);
+    this.stream = stream;
+    this.ring = new byte[capacity];
+    setDaemon(true);
+  }
+
+  @Override
+  public void run() {
+    byte[] buffer = new byte[READ_BUFFER_SIZE];
+    try {
+      int n;
+      while ((n = stream.read(buffer)) != -1) {
+        append(buffer, n);
+      }
+    } catch (IOException e) {
+      // NOTE: STREAM IS CLOSED WHEN THE PROCESS IS DESTROYED
+      Log.d(LOG_TAG, "stream closed: " + e.toString());
+    } finally {
+      try {
+        stream.close();
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
+  private synchronized void append(byte[] buffer, int length) {
+    int offset = 0;
+    if (length > ring.length) {
+      offset = length - ring.length;
+      length = ring.length;
+    }
+    int firstChunk = Math.min(length, ring.length - position);
+    System.arraycopy(buffer, offset, ring, position, firstChunk);
+    System.arraycopy(buffer, offset + firstChunk, ring, 0, length - firstChunk);
+    if (position + length >= ring.length) {
+      wrapped = true;
+    }
+    position = (position + length) % ring.length;
+  }
+
+  /**
+   * Returns the retained tail. When older output was dropped the first, partial line is skipped.
+   */
+  synchronized String getTail() {
+    byte[] tail;
+    if (!wrapped) {
+      tail = new byte[position];
+      System.arraycopy(ring, 0, tail, 0, position);
+    } else {
+      tail = new byte[ring.length];
+      System.arraycopy(ring, position, tail, 0, ring.length - position);
+      System.arraycopy(ring, 0, tail, ring.length - position, position);
+    }
+
+    String text = new String(tail, Charset.forName("UTF-8"));
+    if (wrapped) {
+      int firstLineEnd = text.indexOf('\n');
+      if (firstLineEnd >= 0) {
+        text = text.substring(firstLineEnd + 1);
+      }
+    }
+    return text.trim();
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Shahen Hovhannisyan.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.shahenlibrary.Trimmer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.shahenlibrary.utils.SourceFingerprint;
+import com.shahenlibrary.utils.VideoEdit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Two-level cache of preview frames.
+ *
+ * The disk level keeps encoded thumbnails across restarts, keyed on the
+ * {@link SourceFingerprint} of the video, the timestamp (quantized for keyframe lookups), the
+ * target size and the output format. Once it holds more than {@link #MAX_DISK_BYTES} the least recently used files
+ * are deleted. Recency is the file's mtime, which is bumped on every hit, so no index has to be
+ * written. The memory level keeps the hottest decoded bitmaps (format independent), so asking
+ * for a frame in another format doesn't decode the video again.
+ */
+class ThumbnailCache {
+
+  private static final String LOG_TAG = "RNThumbnailCache";
+  private static final String CACHE_DIR_NAME = "rnvp-thumbnail-cache";
+  private static final String TEMP_FILE_EXTENSION = ".tmp";
+  static final long MAX_DISK_BYTES = 64L * 1024 * 1024;
+  // NOTE: SCRUBBING ASKS FOR ARBITRARY POSITIONS. FRAMES CLOSER THAN THIS SHARE AN ENTRY
+  static final long TIME_QUANTUM_US = 100 * 1000;
+  private static final int MAX_MEMORY_BYTES = (int) Math.min(Runtime.getRuntime().maxMemory() / 16, 16L * 1024 * 1024);
+
+  private static ThumbnailCache instance;
+
+  private final File dir;
+  // NOTE: FILE NAME -> SIZE, ACCESS-ORDERED, SO ITERATION STARTS AT THE LEAST RECENTLY USED FILE
+  private final LinkedHashMap<String, Long> files = new LinkedHashMap<String, Long>(64, 0.75f, true);
+  private long totalBytes = 0;
+
+  private final LruCache<String, Bitmap> bitmaps = new LruCache<String, Bitmap>(MAX_MEMORY_BYTES) {
+    @Override
+    protected int sizeOf(String key, Bitmap value) {
+      return value.getByteCount();
+    }
+  };
+
+  private ThumbnailCache(Context ctx) {
+    dir = new File(ctx.getCacheDir(), CACHE_DIR_NAME);
+    if (!dir.isDirectory()) {
+      dir.mkdirs();
+    }
+    load();
+  }
+
+  static synchronized ThumbnailCache getInstance(@NonNull Context ctx) {
+    if (instance == null) {
+      instance = new ThumbnailCache(ctx.getApplicationContext() != null ? ctx.getApplicationContext() : ctx);
+    }
+    return instance;
+  }
+
+  static long quantize(long timeUs) {
+    return Math.round(timeUs / (double) TIME_QUANTUM_US) * TIME_QUANTUM_US;
+  }
+
+  /**
+   * Key of a decoded frame. {@code width} and {@code height} of 0 mean the frame's own size.
+   * Keyframe and exact frames at the same time are different images, so the accuracy is part of the key.
+   * Only keyframe lookups are quantized: an exact frame 50ms away is another frame.
+   */
+  static String buildBitmapKey(@NonNull SourceFingerprint fingerprint, long timeUs, int width, int height, @Nullable String accuracy) {
+    String frameAccuracy = accuracy != null ? accuracy : VideoEdit.FRAME_ACCURACY_KEYFRAME;
+    long keyTimeUs = VideoEdit.FRAME_ACCURACY_EXACT.equals(frameAccuracy) ? timeUs : quantize(timeUs);
+    return fingerprint.toString() + "|" + keyTimeUs + "|" + width + "x" + height + "|" + frameAccuracy;
+  }
+
+  /** Key of an encoded thumbnail, see {@link ThumbnailWriter} for the formats. */
+  static String buildFileKey(@NonNull String bitmapKey, @Nullable String format, int quality) {
+    return bitmapKey + "|" + (format != null ? format : ThumbnailWriter.FORMAT_BASE64) + "|" + quality;
+  }
+
+  @Nullable
+  Bitmap getBitmap(@NonNull String bitmapKey) {
+    return bitmaps.get(bitmapKey);
+  }
+
+  void putBitmap(@NonNull String bitmapKey, @NonNull Bitmap bmp) {
+    bitmaps.put(bitmapKey, bmp);
+  }
+
+  /**
+   * Returns the cached thumbnail for {@code fileKey}, or null. A hit becomes the most recently used entry.
+   */
+  @Nullable
+  synchronized File get(@NonNull String fileKey, @Nullable String format) {
+    String name = getFileName(fileKey, format);
+    if (files.get(name) == null) {
+      return null;
+    }
+    File file = new File(dir, name);
+    if (!file.isFile()) {
+      totalBytes -= files.remove(name);
+      return null;
+    }
+    file.setLastModified(System.currentTimeMillis());
+    return file;
+  }
+
+  /**
+   * Encodes {@code bmp} into the cache and returns the cached file. Encoding happens outside the
+   * lock into a temp file, which is then renamed into place.
+   */
+  File put(@NonNull String fileKey, @NonNull Bitmap bmp, @Nullable String format, int quality) throws IOException {
+    String name = getFileName(fileKey, format);
+    File temp = new File(dir, UUID.randomUUID().toString() + TEMP_FILE_EXTENSION);
+    ThumbnailWriter.writeFile(bmp, format != null ? format : ThumbnailWriter.FORMAT_BASE64, quality, temp);
+
+    synchronized (this) {
+      File file = new File(dir, name);
+      if (!temp.renameTo(file)) {
+        temp.delete();
+        throw new IOException("Failed to move thumbnail into the cache");
+      }
+      Long previous = files.put(name, file.length());
+      if (previous != null) {
+        totalBytes -= previous;
+      }
+      totalBytes += file.length();
+      evict();
+      return file;
+    }
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<String, Long>> iterator = files.entrySet().iterator();
+    // NOTE: NEVER EVICT THE ENTRY THAT WAS JUST ADDED
+    while (totalBytes > MAX_DISK_BYTES && files.size() > 1 && iterator.hasNext()) {
+      Map.Entry<String, Long> entry = iterator.next();
+      iterator.remove();
+      totalBytes -= entry.getValue();
+      if (!new File(dir, entry.getKey()).delete()) {
+        Log.d(LOG_TAG, "evict: failed to delete " + entry.getKey());
+      }
+    }
+  }
+
+  private void load() {
+    File[] existing = dir.listFiles();
+    if (existing == null) {
+      return;
+    }
+    Arrays.sort(existing, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        long diff = a.lastModified() - b.lastModified();
+        return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+      }
+    });
+    for (File file : existing) {
+      if (file.getName().endsWith(TEMP_FILE_EXTENSION)) {
+        // NOTE: LEFT OVER BY A WRITE THAT NEVER FINISHED
+        file.delete();
+        continue;
+      }
+      files.put(file.getName(), file.length());
+      totalBytes += file.length();
+    }
+    evict();
+  }
+
+  private static String getFileName(String fileKey, @Nullable String format) {
+    String extension = ThumbnailWriter.getFileExtension(format != null ? format : ThumbnailWriter.FORMAT_BASE64);
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA1");
+      return SourceFingerprint.toHex(digest.digest(fileKey.getBytes(Charset.forName("UTF-8")))) + "." + extension;
+    } catch (NoSuchAlgorithmException e) {
+      return Integer.toHexString(fileKey.hashCode()) + "." + extension;
+    }
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Shahen Hovhannisyan.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.shahenlibrary.Trimmer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Base64;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Encodes preview frames either as base64 PNG (the original output) or as JPEG/WebP files.
+ *
+ * Files are written to a directory of their own inside the app cache and handed to JS as
+ * {@code file://} URIs, so only a short string crosses the bridge instead of the image bytes.
+ * A URI stays valid for the rest of the session that produced it, since JS may still display
+ * it; files are only deleted on a later start (see {@link #pruneAsync}).
+ */
+class ThumbnailWriter {
+
+  static final String FORMAT_BASE64 = "base64";
+  static final String FORMAT_JPEG = "JPEG";
+  static final String FORMAT_WEBP = "WEBP";
+
+  static final int DEFAULT_FILE_QUALITY = 80;
+  private static final String THUMBNAIL_DIR_NAME = "rnvp-thumbnails";
+  private static final int WRITE_BUFFER_SIZE = 16 * 1024;
+  private static final int MAX_RETAINED_ENCODE_BUFFER = 1024 * 1024;
+  private static final String LOG_TAG = "RNThumbnailWriter";
+  // NOTE: FILES OF EARLIER SESSIONS ARE KEPT UP TO THIS SIZE, SEE "pruneAsync"
+  static final long MAX_DIR_BYTES = 32L * 1024 * 1024;
+
+  static boolean isSupportedFormat(@Nullable String format) {
+    return format == null || format.equals(FORMAT_BASE64) || format.equals(FORMAT_JPEG) || format.equals(FORMAT_WEBP);
+  }
+
+  static boolean isFileFormat(@Nullable String format) {
+    return FORMAT_JPEG.equals(format) || FORMAT_WEBP.equals(format);
+  }
+
+  static String getFileExtension(@NonNull String format) {
+    if (format.equals(FORMAT_WEBP)) {
+      return "webp";
+    }
+    return format.equals(FORMAT_JPEG) ? "jpeg" : "png";
+  }
+
+  @NonNull
+  static File getThumbnailDir(@NonNull Context ctx) {
+    File dir = new File(ctx.getCacheDir(), THUMBNAIL_DIR_NAME);
+    if (!dir.isDirectory()) {
+      dir.mkdirs();
+    }
+    return dir;
+  }
+
+  /**
+   * Deletes files left over from earlier sessions, oldest first, until the directory holds at
+   * most {@link #MAX_DIR_BYTES}. Runs in the background; call it once when the module starts.
+   */
+  static void pruneAsync(@NonNull Context ctx) {
+    final File dir = new File(ctx.getCacheDir(), THUMBNAIL_DIR_NAME);
+    final long sessionStart = System.currentTimeMillis();
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        prune(dir, sessionStart);
+      }
+    }, "RNVideoProcessing-thumbnail-prune");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.start();
+  }
+
+  private static void prune(File dir, long sessionStart) {
+    File[] existing = dir.listFiles();
+    if (existing == null) {
+      return;
+    }
+    Arrays.sort(existing, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        long diff = a.lastModified() - b.lastModified();
+        return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+      }
+    });
+    long totalBytes = 0;
+    for (File file : existing) {
+      totalBytes += file.length();
+    }
+    for (File file : existing) {
+      // NOTE: SORTED BY AGE, SO EVERYTHING FROM HERE ON WAS WRITTEN IN THIS SESSION AND MAY BE ON SCREEN
+      if (totalBytes <= MAX_DIR_BYTES || file.lastModified() >= sessionStart) {
+        break;
+      }
+      long length = file.length();
+      if (file.delete()) {
+        totalBytes -= length;
+      } else {
+        Log.d(LOG_TAG, "prune: failed to delete " + file.getName());
+      }
+    }
+    Log.d(LOG_TAG, "prune: " + totalBytes + " bytes left");
+  }
+
+  // NOTE: ONE ENCODE BUFFER PER WORKER THREAD, REUSED FOR EVERY FRAME IT ENCODES
+  private static final ThreadLocal<ReusableByteArrayOutputStream> encodeBuffer = new ThreadLocal<ReusableByteArrayOutputStream>() {
+    @Override
+    protected ReusableByteArrayOutputStream initialValue() {
+      return new ReusableByteArrayOutputStream();
+    }
+  };
+
+  /** Exposes the internal buffer, so encoding to base64 doesn't need a copy of it. */
+  private static class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+    ReusableByteArrayOutputStream() {
+      super(64 * 1024);
+    }
+
+    String toBase64() {
+      return Base64.encodeToString(buf, 0, count, Base64.DEFAULT);
+    }
+  }
+
+  static String toBase64Png(@NonNull Bitmap bmp, int quality) {
+    ReusableByteArrayOutputStream byteArrayOutputStream = encodeBuffer.get();
+    byteArrayOutputStream.reset();
+    bmp.compress(Bitmap.CompressFormat.PNG, quality, byteArrayOutputStream);
+    String encoded = byteArrayOutputStream.toBase64();
+    if (byteArrayOutputStream.size() > MAX_RETAINED_ENCODE_BUFFER) {
+      // NOTE: A FULL-SIZE FRAME GREW IT, DON'T KEEP THAT MUCH AROUND
+      encodeBuffer.remove();
+    }
+    return encoded;
+  }
+
+  static String toBase64(@NonNull File file) throws IOException {
+    InputStream is = new FileInputStream(file);
+    try {
+      byte[] data = new byte[(int) file.length()];
+      int offset = 0;
+      int n;
+      while (offset < data.length && (n = is.read(data, offset, data.length - offset)) != -1) {
+        offset += n;
+      }
+      return Base64.encodeToString(data, 0, offset, Base64.DEFAULT);
+    } finally {
+      is.close();
+    }
+  }
+
+  /**
+   * Writes {@code bmp} as a new JPEG/WebP file in the thumbnail directory and returns its
+   * {@code file://} URI.
+   */
+  static String writeFile(@NonNull Context ctx, @NonNull Bitmap bmp, @NonNull String format, int quality) throws IOException {
+    File file = new File(getThumbnailDir(ctx), UUID.randomUUID().toString() + "." + getFileExtension(format));
+    writeFile(bmp, format, quality, file);
+    return "file://" + file.getPath();
+  }
+
+  /**
+   * Copies an already encoded image (e.g. a {@link ThumbnailCache} file) to a new file in the
+   * thumbnail directory and returns its {@code file://} URI. Cache files stay internal: they are
+   * shared between callers and evicted on their own schedule.
+   */
+  static String copyFile(@NonNull Context ctx, @NonNull File src, @NonNull String format) throws IOException {
+    File file = new File(getThumbnailDir(ctx), UUID.randomUUID().toString() + "." + getFileExtension(format));
+    InputStream is = new FileInputStream(src);
+    try {
+      OutputStream os = new FileOutputStream(file);
+      try {
+        byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+        int n;
+        while ((n = is.read(buffer)) != -1) {
+          os.write(buffer, 0, n);
+        }
+      } finally {
+        os.close();
+      }
+    } finally {
+      is.close();
+    }
+    return "file://" + file.getPath();
+  }
+
+  /** Writes {@code bmp} to {@code file}. Formats other than JPEG/WebP are written as PNG. */
+  static void writeFile(@NonNull Bitmap bmp, @NonNull String format, int quality, @NonNull File file) throws IOException {
+    Bitmap.CompressFormat compressFormat = Bitmap.CompressFormat.PNG;
+    if (format.equals(FORMAT_WEBP)) {
+      compressFormat = Bitmap.CompressFormat.WEBP;
+    } else if (format.equals(FORMAT_JPEG)) {
+      compressFormat = Bitmap.CompressFormat.JPEG;
+    }
+    // NOTE: STREAM STRAIGHT INTO THE FILE INSTEAD OF BUFFERING THE WHOLE IMAGE IN MEMORY FIRST
+    OutputStream os = new BufferedOutputStream(new FileOutputStream(file), WRITE_BUFFER_SIZE);
+    try {
+      if (!bmp.compress(compressFormat, quality, os)) {
+        throw new IOException("Failed to encode " + format + " image");
+      }
+    } finally {
+      os.close();
+    }
+  }
+}
@@ -29,27 +29,36 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Matrix;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Build;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.util.Base64;
+import android.text.TextUtils;
 import android.util.Log;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactContext;
 import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.facebook.react.uimanager.ThemedReactContext;
 import com.shahenlibrary.Events.Events;
 import com.shahenlibrary.interfaces.OnCompressVideoListener;
+import com.shahenlibrary.interfaces.OnFfmpegProgressListener;
+import com.shahenlibrary.utils.MediaProbe;
+import com.shahenlibrary.utils.SourceFingerprint;
 import com.shahenlibrary.utils.VideoEdit;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
+
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -59,8 +68,20 @@ import java.io.InputStreamReader;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Formatter;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import android.os.Environment;
 import wseemann.media.FFmpegMediaMetadataRetriever;
 
@@ -68,22 +89,56 @@ import wseemann.media.FFmpegMediaMetadataRetriever;
 public class Trimmer {
 
   private static final String LOG_TAG = "RNTrimmerManager";
-  private static final String FFMPEG_FILE_NAME = "ffmpeg";
-  private static final String FFMPEG_SHA1 = "77ae380db4bf56d011eca9ef9f20d397c0467aec";
 
-  private static boolean ffmpegLoaded = false;
-  private static final int DEFAULT_BUFFER_SIZE = 4096;
-  private static final int END_OF_FILE = -1;
 
-  private static class FfmpegCmdAsyncTaskParams {
+  // NOTE: "targetSizeBytes" RE-ENCODES AUDIO AT A FIXED RATE SO THE VIDEO GETS A KNOWN SHARE OF THE SIZE
+  private static final long TARGET_SIZE_AUDIO_BITRATE = 128000;
+  private static final double TARGET_SIZE_CONTAINER_OVERHEAD = 0.02;
+  private static final long MIN_TARGET_SIZE_VIDEO_BITRATE = 32000;
+
+  static final String TRIM_MODE_FAST = "fast";
+  static final String TRIM_MODE_ACCURATE = "accurate";
+
+  static final String ERROR_QUEUE_FULL = "E_FFMPEG_QUEUE_FULL";
+  static final String ERROR_CANCELLED = "E_FFMPEG_CANCELLED";
+  static final String ERROR_JOB_NOT_FOUND = "E_FFMPEG_JOB_NOT_FOUND";
+
+  private static final String WRONG_FORMAT_MESSAGE = "Wrong 'format'. Expected one of 'base64', 'JPEG' or 'WEBP'.";
+
+  private static final long PROGRESS_EVENT_INTERVAL_MS = 500;
+  // NOTE: ONLY THE END OF FFMPEG'S LOG IS USEFUL FOR ERROR MESSAGES
+  private static final int STDERR_TAIL_SIZE = 8 * 1024;
+  private static final long STDERR_JOIN_TIMEOUT_MS = 2000;
+
+  private static final ConcurrentMap<String, FfmpegCmdTask> runningJobs = new ConcurrentHashMap<String, FfmpegCmdTask>();
+  // NOTE: CANCELLATION FLAGS OF STREAMED PREVIEW IMAGE REQUESTS, BY REQUEST ID
+  private static final ConcurrentHashMap<String, AtomicBoolean> previewStreams = new ConcurrentHashMap<String, AtomicBoolean>();
+
+  /**
+   * Everything a queued ffmpeg job needs. The constructor takes what every job has, the setters
+   * the optional parts, so call sites name what they pass instead of lining up positional nulls.
+   */
+  private static class FfmpegCmdTaskParams {
     ArrayList<String> cmd;
     final String pathToProcessingFile;
-    ReactApplicationContext ctx;
+    ReactContext ctx;
     final Promise promise;
     final String errorMessageTitle;
     final OnCompressVideoListener cb;
-
-    FfmpegCmdAsyncTaskParams(ArrayList<String> cmd, final String pathToProcessingFile, ReactApplicationContext ctx, final Promise promise, final String errorMessageTitle, final OnCompressVideoListener cb) {
+    FfmpegJobScheduler.Priority priority = FfmpegJobScheduler.Priority.INTERACTIVE;
+    String jobId = UUID.randomUUID().toString();
+    // NOTE: "-threads" FOR THE DECODERS AND ENCODER. 0 PICKS A COUNT WHEN THE JOB STARTS (SEE "FfmpegJobScheduler.getThreadsPerJob")
+    int threads = 0;
+    // NOTE: EXPECTED OUTPUT DURATION, USED AS THE DENOMINATOR FOR PROGRESS. 0 IF UNKNOWN
+    long durationMs = 0;
+    // NOTE: MERGED INTO THE RESOLVED MAP ON SUCCESS
+    ReadableMap extraResult;
+    // NOTE: OUTPUT IS STORED IN "OutputCache" UNDER THIS KEY ON SUCCESS. NULL IF NOT CACHEABLE
+    String cacheKey;
+    // NOTE: CALLED FOR EVERY PROGRESS BLOCK, NOT THROTTLED
+    OnFfmpegProgressListener progressListener;
+
+    FfmpegCmdTaskParams(ArrayList<String> cmd, final String pathToProcessingFile, ReactContext ctx, @Nullable final Promise promise, final String errorMessageTitle, @Nullable final OnCompressVideoListener cb) {
       this.cmd = cmd;
       this.pathToProcessingFile = pathToProcessingFile;
       this.ctx = ctx;
@@ -91,60 +146,134 @@ public class Trimmer {
       this.errorMessageTitle = errorMessageTitle;
       this.cb = cb;
     }
+
+    /** Reads the "priority", "jobId" and "threads" options. */
+    FfmpegCmdTaskParams setJobOptions(@NonNull ReadableMap options, @NonNull FfmpegJobScheduler.Priority defaultPriority) {
+      this.priority = getJobPriority(options, defaultPriority);
+      this.jobId = getJobId(options);
+      this.threads = getJobThreads(options);
+      return this;
+    }
+
+    FfmpegCmdTaskParams setJobId(@NonNull String jobId) {
+      this.jobId = jobId;
+      return this;
+    }
+
+    FfmpegCmdTaskParams setDurationMs(long durationMs) {
+      this.durationMs = durationMs;
+      return this;
+    }
+
+    FfmpegCmdTaskParams setExtraResult(@Nullable ReadableMap extraResult) {
+      this.extraResult = extraResult;
+      return this;
+    }
+
+    FfmpegCmdTaskParams setCacheKey(@Nullable String cacheKey) {
+      this.cacheKey = cacheKey;
+      return this;
+    }
+
+    FfmpegCmdTaskParams setProgressListener(@Nullable OnFfmpegProgressListener progressListener) {
+      this.progressListener = progressListener;
+      return this;
+    }
   }
 
-  private static class FfmpegCmdAsyncTask extends AsyncTask<FfmpegCmdAsyncTaskParams, Void, Void> {
+  private static class FfmpegCmdTask implements Runnable {
+    private final FfmpegCmdTaskParams params;
+
+    // NOTE: GUARDED BY "this". "cancel" MAY BE CALLED FROM ANY THREAD WHILE "run" IS IN PROGRESS
+    private Process process;
+    private boolean cancelled = false;
+    private boolean finished = false;
+
+    FfmpegCmdTask(FfmpegCmdTaskParams params) {
+      this.params = params;
+    }
 
     @Override
-    protected Void doInBackground(FfmpegCmdAsyncTaskParams... params) {
-      ArrayList<String> cmd = params[0].cmd;
-      final String pathToProcessingFile = params[0].pathToProcessingFile;
-      ReactApplicationContext ctx = params[0].ctx;
-      final Promise promise = params[0].promise;
-      final String errorMessageTitle = params[0].errorMessageTitle;
-      final OnCompressVideoListener cb = params[0].cb;
+    public void run() {
+      ArrayList<String> cmd = params.cmd;
+      final String pathToProcessingFile = params.pathToProcessingFile;
+      ReactContext ctx = params.ctx;
+      final Promise promise = params.promise;
+      final String errorMessageTitle = params.errorMessageTitle;
+      final OnCompressVideoListener cb = params.cb;
 
 
       String errorMessageFromCmd = null;
 
       try {
+        // NOTE: A JOB QUEUED RIGHT AFTER STARTUP MAY RUN BEFORE THE BINARY IS IN PLACE
+        if (!FfmpegInstaller.awaitInstall(ctx)) {
+          throw new IOException("ffmpeg is not installed");
+        }
+
         // NOTE: 3. EXECUTE "ffmpeg" COMMAND
         String ffmpegInDir = getFfmpegAbsolutePath(ctx);
         cmd.add(0, ffmpegInDir);
-        Process p = new ProcessBuilder(cmd).start();
+        // NOTE: MACHINE-READABLE PROGRESS GOES TO STDOUT, HUMAN-READABLE STATS ARE NOT NEEDED
+        cmd.add(1, "-progress");
+        cmd.add(2, "pipe:1");
+        cmd.add(3, "-nostats");
+        // NOTE: DECIDED NOW RATHER THAN AT SUBMIT TIME, WHEN THE NUMBER OF RUNNING JOBS IS KNOWN
+        int threads = params.threads > 0 ? params.threads : FfmpegJobScheduler.getInstance().getThreadsPerJob();
+        addThreadOptions(cmd, Integer.toString(threads));
+        Process p = startProcess(cmd);
+        if (p == null) {
+          // NOTE: CANCELLED BEFORE IT STARTED
+          finishCancelled();
+          return;
+        }
+
+        // NOTE: STDERR MUST BE DRAINED WHILE THE PROCESS RUNS, OTHERWISE FFMPEG BLOCKS ON A FULL PIPE
+        StreamTailDrainer stderr = new StreamTailDrainer(p.getErrorStream(), STDERR_TAIL_SIZE, "RNVideoProcessing-ffmpeg-stderr " + params.jobId);
+        stderr.start();
 
         BufferedReader input = getOutputFromProcess(p);
         String line = null;
 
-        StringBuilder sInput = new StringBuilder();
+        FfmpegProgressParser progressParser = new FfmpegProgressParser();
+        long lastProgressEventAt = 0;
 
         while((line=input.readLine()) != null) {
-            Log.d(LOG_TAG, "processing ffmpeg");
-            System.out.println(sInput);
-            sInput.append(line);
+          FfmpegProgressParser.Progress progress = progressParser.feed(line);
+          if (progress == null) {
+            continue;
+          }
+          if (params.progressListener != null) {
+            params.progressListener.onProgress(progress.encodedTimeMs, progress.ended);
+          }
+          long now = SystemClock.elapsedRealtime();
+          if (progress.ended || now - lastProgressEventAt >= PROGRESS_EVENT_INTERVAL_MS) {
+            lastProgressEventAt = now;
+            sendProgressEvent(ctx, params.jobId, progress, params.durationMs);
+          }
         }
         input.close();
 
         int errorCode = p.waitFor();
+        stderr.join(STDERR_JOIN_TIMEOUT_MS);
         Log.d(LOG_TAG, "ffmpeg processing completed");
 
         if ( errorCode != 0 ) {
-          BufferedReader error = getErrorFromProcess(p);
-          StringBuilder sError = new StringBuilder();
-
           Log.d(LOG_TAG, "ffmpeg error code: " + errorCode);
-          while((line=error.readLine()) != null) {
-              System.out.println(sError);
-              sError.append(line);
-          }
-          error.close();
-
-          errorMessageFromCmd = sError.toString();
+          errorMessageFromCmd = stderr.getTail();
         }
       } catch (Exception e) {
         errorMessageFromCmd = e.toString();
       }
 
+      if (isCancelled()) {
+        finishCancelled();
+        return;
+      }
+      if (!markFinished()) {
+        return;
+      }
+
       if ( errorMessageFromCmd != null ) {
         String errorMessage = errorMessageTitle + ": failed. " + errorMessageFromCmd;
 
@@ -154,190 +283,618 @@ public class Trimmer {
           promise.reject(errorMessage);
         }
       } else {
+        OutputCache.getInstance(ctx).put(params.cacheKey, new File(pathToProcessingFile), params.extraResult);
+
         String filePath = "file://" + pathToProcessingFile;
         if (cb != null) {
           cb.onSuccess(filePath);
         } else if (promise != null) {
           WritableMap event = Arguments.createMap();
+          if (params.extraResult != null) {
+            event.merge(params.extraResult);
+          }
           event.putString("source", filePath);
+          event.putString("jobId", params.jobId);
+          event.putDouble("size", new File(pathToProcessingFile).length());
           promise.resolve(event);
         }
       }
-
-      return null;
     }
 
-  }
+    private synchronized Process startProcess(ArrayList<String> cmd) throws IOException {
+      if (cancelled) {
+        return null;
+      }
+      process = new ProcessBuilder(cmd).start();
+      return process;
+    }
 
+    private synchronized boolean isCancelled() {
+      return cancelled;
+    }
 
-  private static class LoadFfmpegAsyncTaskParams {
-    ReactApplicationContext ctx;
+    private synchronized boolean markFinished() {
+      if (finished) {
+        return false;
+      }
+      finished = true;
+      runningJobs.remove(params.jobId);
+      return true;
+    }
 
-    LoadFfmpegAsyncTaskParams(ReactApplicationContext ctx) {
-      this.ctx = ctx;
+    /**
+     * Kills the ffmpeg process if it is already running. A job that is still queued reports
+     * its cancellation as soon as the caller removed it from the scheduler (see {@link #finishCancelled()}).
+     */
+    synchronized void cancel() {
+      cancelled = true;
+      if (process != null) {
+        process.destroy();
+      }
     }
-  }
 
-  private static class LoadFfmpegAsyncTask extends AsyncTask<LoadFfmpegAsyncTaskParams, Void, Void> {
+    void finishCancelled() {
+      if (!markFinished()) {
+        return;
+      }
+      Log.d(LOG_TAG, "ffmpeg job cancelled: " + params.jobId);
 
-    @Override
-    protected Void doInBackground(LoadFfmpegAsyncTaskParams... params) {
-      ReactApplicationContext ctx = params[0].ctx;
+      // NOTE: DO NOT LEAVE HALF-WRITTEN OUTPUT BEHIND
+      File output = new File(params.pathToProcessingFile);
+      if (output.exists() && !output.delete()) {
+        Log.d(LOG_TAG, "Failed to delete partial output: " + params.pathToProcessingFile);
+      }
 
-      // NOTE: 1. COPY "ffmpeg" FROM ASSETS TO /data/data/com.myapp...
-      String filesDir = getFilesDirAbsolutePath(ctx);
+      if (params.cb != null) {
+        params.cb.cancelAction();
+      } else if (params.promise != null) {
+        params.promise.reject(ERROR_CANCELLED, params.errorMessageTitle + ": cancelled. Job " + params.jobId);
+      }
+    }
+  }
 
-      // TODO: MAKE SURE THAT WHEN WE UPDATE FFMPEG AND USER UPDATES APP IT WILL LOAD NEW FFMPEG (IT MUST OVERWRITE OLD FFMPEG)
-      try {
-        File ffmpegFile = new File(filesDir, FFMPEG_FILE_NAME);
-        if ( !(ffmpegFile.exists() && getSha1FromFile(ffmpegFile).equalsIgnoreCase(FFMPEG_SHA1)) ) {
-          final FileOutputStream ffmpegStreamToDataDir = new FileOutputStream(ffmpegFile);
-          byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-
-          int n;
-          InputStream ffmpegInAssets = ctx.getAssets().open("armeabi-v7a" + File.separator + FFMPEG_FILE_NAME);
-          while(END_OF_FILE != (n = ffmpegInAssets.read(buffer))) {
-            ffmpegStreamToDataDir.write(buffer, 0, n);
+
+  public static void getPreviewImages(final String path, final ReadableMap options, final Promise promise, final ReactApplicationContext ctx) {
+    if (!ThumbnailWriter.isSupportedFormat(getPreviewImageFormat(options))) {
+      promise.reject("Wrong format error", WRONG_FORMAT_MESSAGE);
+      return;
+    }
+    PreviewImageExtractor.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          // NOTE: FRAMES FINISH OUT OF ORDER. SORTING BY INDEX KEEPS THE RESULT IN TIMESTAMP ORDER
+          final SortedMap<Integer, String> encodedFrames = Collections.synchronizedSortedMap(new TreeMap<Integer, String>());
+          extractPreviewImages(path, options, ctx, null, new PreviewImageListener() {
+            @Override
+            public void onPreviewImage(int index, long timeUs, String image) {
+              encodedFrames.put(index, image);
+            }
+          });
+
+          WritableArray images = Arguments.createArray();
+          for (String encoded : encodedFrames.values()) {
+            images.pushString(encoded);
           }
 
-          ffmpegStreamToDataDir.flush();
-          ffmpegStreamToDataDir.close();
+          WritableMap event = Arguments.createMap();
+
+          event.putArray("images", images);
 
-          ffmpegInAssets.close();
+          promise.resolve(event);
+        } catch (Exception e) {
+          promise.reject("getPreviewImages error", e.toString());
         }
-      } catch (IOException e) {
-        Log.d(LOG_TAG, "Failed to copy ffmpeg" + e.toString());
-        ffmpegLoaded = false;
-        return null;
       }
+    });
+  }
 
-      String ffmpegInDir = getFfmpegAbsolutePath(ctx);
-
-      // NOTE: 2. MAKE "ffmpeg" EXECUTABLE
-      String[] cmdlineChmod = { "chmod", "700", ffmpegInDir };
-      // TODO: 1. CHECK PERMISSIONS
-      Process pChmod = null;
-      try {
-        pChmod = Runtime.getRuntime().exec(cmdlineChmod);
-      } catch (IOException e) {
-        Log.d(LOG_TAG, "Failed to make ffmpeg executable. Error in execution cmd. " + e.toString());
-        ffmpegLoaded = false;
-        return null;
-      }
+  /**
+   * Same frames as {@link #getPreviewImages}, but every image is sent as a
+   * {@link Events#PREVIEW_IMAGE} event as soon as it is encoded, followed by one
+   * {@link Events#PREVIEW_IMAGES_COMPLETE} event. All events carry the request id, so a
+   * listener can drop images from a stream it no longer cares about, or stop it with
+   * {@link #cancelPreviewImages}. The promise resolves with the completion event.
+   */
+  static void getPreviewImagesStream(final String path, final ReadableMap options, final Promise promise, final ReactApplicationContext ctx) {
+    if (!ThumbnailWriter.isSupportedFormat(getPreviewImageFormat(options))) {
+      promise.reject("Wrong format error", WRONG_FORMAT_MESSAGE);
+      return;
+    }
+    final String requestId = options != null && options.hasKey("requestId") ? options.getString("requestId") : UUID.randomUUID().toString();
+    final AtomicBoolean cancelled = new AtomicBoolean(false);
+    if (previewStreams.putIfAbsent(requestId, cancelled) != null) {
+      promise.reject("getPreviewImagesStream error", "request " + requestId + " is already running");
+      return;
+    }
 
-      try {
-        pChmod.waitFor();
-      } catch (InterruptedException e) {
-        Log.d(LOG_TAG, "Failed to make ffmpeg executable. Error in wait cmd. " + e.toString());
-        ffmpegLoaded = false;
-        return null;
+    PreviewImageExtractor.submit(new Runnable() {
+      @Override
+      public void run() {
+        final AtomicInteger count = new AtomicInteger(0);
+        try {
+          if (!cancelled.get()) {
+            extractPreviewImages(path, options, ctx, cancelled, new PreviewImageListener() {
+              @Override
+              public void onPreviewImage(int index, long timeUs, String image) {
+                if (cancelled.get()) {
+                  return;
+                }
+                count.incrementAndGet();
+                WritableMap event = Arguments.createMap();
+                event.putString("requestId", requestId);
+                event.putInt("index", index);
+                event.putDouble("time", timeUs / 1000000.0);
+                event.putString("image", image);
+                emitDeviceEvent(ctx, Events.PREVIEW_IMAGE, event);
+              }
+            });
+          }
+        } catch (Exception e) {
+          previewStreams.remove(requestId);
+          promise.reject("getPreviewImagesStream error", e.toString());
+          return;
+        }
+        previewStreams.remove(requestId);
+
+        WritableMap event = Arguments.createMap();
+        event.putString("requestId", requestId);
+        event.putInt("count", count.get());
+        event.putBoolean("cancelled", cancelled.get());
+        emitDeviceEvent(ctx, Events.PREVIEW_IMAGES_COMPLETE, event);
+
+        WritableMap result = Arguments.createMap();
+        result.putString("requestId", requestId);
+        result.putInt("count", count.get());
+        result.putBoolean("cancelled", cancelled.get());
+        promise.resolve(result);
       }
-
-      ffmpegLoaded = true;
-      return null;
-    }
+    });
   }
 
-
-  public static void getPreviewImages(String path, Promise promise, ReactApplicationContext ctx) {
-    FFmpegMediaMetadataRetriever retriever = new FFmpegMediaMetadataRetriever();
-    if (VideoEdit.shouldUseURI(path)) {
-      retriever.setDataSource(ctx, Uri.parse(path));
-    } else {
-      retriever.setDataSource(path);
+  static void cancelPreviewImages(String requestId, Promise promise) {
+    AtomicBoolean cancelled = previewStreams.get(requestId);
+    if (cancelled == null) {
+      promise.reject(ERROR_JOB_NOT_FOUND, "no preview images request with id " + requestId);
+      return;
     }
+    cancelled.set(true);
 
-    WritableArray images = Arguments.createArray();
-    int duration = Integer.parseInt(retriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_DURATION));
-    int width = Integer.parseInt(retriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
-    int height = Integer.parseInt(retriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
-    int orientation = Integer.parseInt(retriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION));
+    WritableMap result = Arguments.createMap();
+    result.putString("requestId", requestId);
+    result.putBoolean("cancelled", true);
+    promise.resolve(result);
+  }
 
-    float aspectRatio = width / height;
+  private interface PreviewImageListener {
+    /** Called on an extractor worker thread, in no particular order. */
+    void onPreviewImage(int index, long timeUs, String image);
+  }
 
-    int resizeWidth = 200;
-    int resizeHeight = Math.round(resizeWidth / aspectRatio);
+  @Nullable
+  private static String getPreviewImageFormat(@Nullable ReadableMap options) {
+    return options != null && options.hasKey("format") ? options.getString("format") : null;
+  }
 
-    float scaleWidth = ((float) resizeWidth) / width;
-    float scaleHeight = ((float) resizeHeight) / height;
+  private static int getPreviewImageQuality(@Nullable ReadableMap options, int defaultQuality) {
+    if (options == null || !options.hasKey("quality")) {
+      return defaultQuality;
+    }
+    return Math.max(0, Math.min(100, options.getInt("quality")));
+  }
 
-    Log.d(TrimmerManager.REACT_PACKAGE, "getPreviewImages: \n\tduration: " + duration +
-            "\n\twidth: " + width +
-            "\n\theight: " + height +
+  /**
+   * Images are base64 PNG data URIs by default, or {@code file://} URIs of JPEG/WebP files
+   * when {@code options.format} asks for them.
+   */
+  private static void extractPreviewImages(String path, @Nullable ReadableMap options, final ReactApplicationContext ctx, @Nullable AtomicBoolean cancelled, final PreviewImageListener listener) throws InterruptedException {
+    final String format = getPreviewImageFormat(options);
+    final int quality = getPreviewImageQuality(options, ThumbnailWriter.isFileFormat(format) ? ThumbnailWriter.DEFAULT_FILE_QUALITY : 90);
+
+    MediaProbe probe = MediaProbe.probe(ctx, path);
+    PreviewLayout layout = getPreviewLayout(probe, options);
+    final int orientation = probe.rotation;
+    final int resizeWidth = layout.decodeWidth;
+    final int resizeHeight = layout.decodeHeight;
+
+    Log.d(TrimmerManager.REACT_PACKAGE, "getPreviewImages: \n\tduration: " + probe.durationMs +
+            "\n\twidth: " + probe.width +
+            "\n\theight: " + probe.height +
             "\n\torientation: " + orientation +
-            "\n\taspectRatio: " + aspectRatio +
+            "\n\tcount: " + layout.count +
             "\n\tresizeWidth: " + resizeWidth +
             "\n\tresizeHeight: " + resizeHeight
     );
 
-    Matrix mx = new Matrix();
+    ArrayList<Long> times = new ArrayList<Long>();
+    for (long timeUs : layout.timesUs) {
+      times.add(timeUs);
+    }
 
-    mx.postScale(scaleWidth, scaleHeight);
-    mx.postRotate(orientation - 360);
+    final ThumbnailCache cache = getThumbnailCache(ctx, options);
+    final SourceFingerprint fingerprint = cache != null ? SourceFingerprint.compute(ctx, path) : null;
+
+    // NOTE: SERVE CACHED FRAMES RIGHT AWAY AND ONLY DECODE THE REST
+    final ArrayList<Integer> missing = new ArrayList<Integer>();
+    for (int i = 0; i < times.size(); i++) {
+      long timeUs = times.get(i);
+      String image = null;
+      if (fingerprint != null) {
+        try {
+          image = getCachedPreviewImage(ctx, cache, ThumbnailCache.buildBitmapKey(fingerprint, timeUs, resizeWidth, resizeHeight, VideoEdit.FRAME_ACCURACY_KEYFRAME), format, quality);
+        } catch (IOException e) {
+          Log.d(LOG_TAG, "getPreviewImages: failed to read cached frame " + i + ". " + e.toString());
+        }
+      }
+      if (image != null) {
+        listener.onPreviewImage(i, timeUs, image);
+      } else {
+        missing.add(i);
+      }
+    }
 
-    for (int i = 0; i < duration; i += duration / 10) {
-      Bitmap frame = retriever.getFrameAtTime(i * 1000);
+    long[] timesUs = new long[missing.size()];
+    for (int i = 0; i < timesUs.length; i++) {
+      timesUs[i] = times.get(missing.get(i));
+    }
 
-      if(frame == null) {
-        continue;
+    final BitmapPool pool = BitmapPool.getInstance();
+    // NOTE: THE DECODER SCALES, SO THE ONLY EXTRA PASS IS THE ROTATION INTO A POOLED BITMAP
+    PreviewImageExtractor.extract(ctx, path, timesUs, resizeWidth, resizeHeight, new PreviewImageExtractor.FrameHandler() {
+      @Override
+      public void onFrame(int missingIndex, long timeUs, Bitmap frame) {
+        if (frame == null) {
+          return;
+        }
+        int index = missing.get(missingIndex);
+        if (frame.getWidth() != resizeWidth || frame.getHeight() != resizeHeight) {
+          // NOTE: SOME DECODERS IGNORE THE REQUESTED SIZE
+          Bitmap scaled = Bitmap.createScaledBitmap(frame, resizeWidth, resizeHeight, true);
+          if (scaled != frame) {
+            frame.recycle();
+          }
+          frame = scaled;
+        }
+
+        Bitmap normalizedBmp = pool.rotate(frame, orientation);
+        String bitmapKey = fingerprint != null ? ThumbnailCache.buildBitmapKey(fingerprint, timeUs, resizeWidth, resizeHeight, VideoEdit.FRAME_ACCURACY_KEYFRAME) : null;
+        try {
+          listener.onPreviewImage(index, timeUs, encodePreviewImage(ctx, normalizedBmp, format, quality, cache, bitmapKey));
+        } catch (IOException e) {
+          Log.d(LOG_TAG, "getPreviewImages: failed to write frame " + index + ". " + e.toString());
+        }
+        if (bitmapKey == null) {
+          // NOTE: NOT KEPT BY THE MEMORY CACHE, SO THE NEXT FRAME CAN REUSE IT
+          pool.release(normalizedBmp);
+        }
       }
-      Bitmap currBmp = Bitmap.createScaledBitmap(frame, resizeWidth, resizeHeight, false);
+    }, cancelled);
+  }
+
+  private static final int DEFAULT_PREVIEW_COUNT = 10;
+  private static final int MAX_PREVIEW_COUNT = 500;
+  private static final int DEFAULT_PREVIEW_WIDTH = 200;
+
+  /** Where and how big the frames of a filmstrip or storyboard are. */
+  private static class PreviewLayout {
+    long startMs;
+    long endMs;
+    int count;
+    // NOTE: SIZE OF THE IMAGES AS DISPLAYED, I.E. AFTER ROTATION
+    int width;
+    int height;
+    // NOTE: SIZE THE DECODER PRODUCES, I.E. BEFORE ROTATION
+    int decodeWidth;
+    int decodeHeight;
+    long[] timesUs;
+  }
 
-      Bitmap normalizedBmp = Bitmap.createBitmap(currBmp, 0, 0, resizeWidth, resizeHeight, mx, true);
-      ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-      normalizedBmp.compress(Bitmap.CompressFormat.PNG, 90, byteArrayOutputStream);
-      byte[] byteArray = byteArrayOutputStream .toByteArray();
-      String encoded = "data:image/png;base64," + Base64.encodeToString(byteArray, Base64.DEFAULT);
-      images.pushString(encoded);
+  /**
+   * Reads {@code count}, {@code width}/{@code height} (one of them is enough, the other follows
+   * the aspect ratio) and the {@code startTime}/{@code endTime} range from {@code options}.
+   * Frames are spread evenly over the range, starting at its beginning.
+   */
+  private static PreviewLayout getPreviewLayout(MediaProbe probe, @Nullable ReadableMap options) {
+    PreviewLayout layout = new PreviewLayout();
+
+    int count = options != null && options.hasKey("count") ? options.getInt("count") : DEFAULT_PREVIEW_COUNT;
+    layout.count = Math.max(1, Math.min(MAX_PREVIEW_COUNT, count));
+
+    long startMs = options != null ? readTimeMs(options, "startTime") : -1;
+    long endMs = options != null ? readTimeMs(options, "endTime") : -1;
+    layout.startMs = Math.max(0, startMs);
+    layout.endMs = endMs >= 0 ? endMs : probe.durationMs;
+    if (probe.durationMs > 0) {
+      layout.endMs = Math.min(layout.endMs, probe.durationMs);
+    }
+    if (layout.endMs < layout.startMs) {
+      throw new IllegalArgumentException("'endTime' must not be before 'startTime'");
     }
 
-    WritableMap event = Arguments.createMap();
+    // NOTE: FLOATING POINT, SO A CLIP SHORTER THAN "count" MILLISECONDS STILL GETS DISTINCT STEPS
+    double stepMs = (layout.endMs - layout.startMs) / (double) layout.count;
+    layout.timesUs = new long[layout.count];
+    for (int i = 0; i < layout.count; i++) {
+      layout.timesUs[i] = Math.round((layout.startMs + i * stepMs) * 1000);
+    }
 
-    event.putArray("images", images);
+    int displayWidth = probe.getDisplayWidth();
+    int displayHeight = probe.getDisplayHeight();
+    double aspectRatio = displayWidth > 0 && displayHeight > 0 ? (double) displayWidth / displayHeight : 1;
+    int width = options != null && options.hasKey("width") ? options.getInt("width") : 0;
+    int height = options != null && options.hasKey("height") ? options.getInt("height") : 0;
+    if (width <= 0 && height <= 0) {
+      width = DEFAULT_PREVIEW_WIDTH;
+    }
+    if (width <= 0) {
+      width = (int) Math.round(height * aspectRatio);
+    } else if (height <= 0) {
+      height = (int) Math.round(width / aspectRatio);
+    }
+    layout.width = Math.max(1, width);
+    layout.height = Math.max(1, height);
 
-    promise.resolve(event);
-    retriever.release();
+    boolean swap = probe.rotation == 90 || probe.rotation == 270;
+    layout.decodeWidth = swap ? layout.height : layout.width;
+    layout.decodeHeight = swap ? layout.width : layout.height;
+    return layout;
   }
 
-  @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
-  public static void getVideoInfo(String path, Promise promise, ReactApplicationContext ctx) {
-    FFmpegMediaMetadataRetriever mmr = new FFmpegMediaMetadataRetriever();
+  /**
+   * Renders the whole filmstrip into one tiled image with a single ffmpeg decode pass and writes
+   * a JSON index next to it. Resolves with the sprite, the index file and the tiles (time and
+   * position of every frame). Takes the same options as {@link #getPreviewImages} plus
+   * {@code columns}. Only JPEG output is supported.
+   */
+  static void getPreviewStoryboard(final String source, ReadableMap options, final Promise promise, final ReactApplicationContext ctx) {
+    final PreviewLayout layout;
+    try {
+      layout = getPreviewLayout(MediaProbe.probe(ctx, source), options);
+    } catch (Exception e) {
+      promise.reject("getPreviewStoryboard error", e.toString());
+      return;
+    }
+    String format = getPreviewImageFormat(options);
+    if (format != null && !format.equals(ThumbnailWriter.FORMAT_JPEG)) {
+      promise.reject("Wrong format error", "Wrong 'format'. Storyboards only support 'JPEG'.");
+      return;
+    }
+    int quality = getPreviewImageQuality(options, ThumbnailWriter.DEFAULT_FILE_QUALITY);
+
+    int columns = options.hasKey("columns") ? options.getInt("columns") : (int) Math.ceil(Math.sqrt(layout.count));
+    final int tileColumns = Math.max(1, Math.min(layout.count, columns));
+    final int tileRows = (layout.count + tileColumns - 1) / tileColumns;
+
+    final String jobId = getJobId(options);
+    // NOTE: NOT IN "OutputCache". THE SPRITE LIVES IN THE THUMBNAIL DIRECTORY, WHICH MANAGES ITS LIFETIME
+    OnCompressVideoListener cb = new OnCompressVideoListener() {
+      @Override
+      public void onError(String message) {
+        promise.reject("getPreviewStoryboard error", message);
+      }
 
-    if (VideoEdit.shouldUseURI(path)) {
-      mmr.setDataSource(ctx, Uri.parse(path));
-    } else {
-      mmr.setDataSource(path);
+      @Override
+      public void onCompressStarted() {
+      }
+
+      @Override
+      public void onSuccess(String uri) {
+        WritableMap event = Arguments.createMap();
+        WritableArray tiles = Arguments.createArray();
+        JSONObject index = new JSONObject();
+        try {
+          JSONArray indexTiles = new JSONArray();
+          for (int i = 0; i < layout.count; i++) {
+            double time = layout.timesUs[i] / 1000000.0;
+            int x = (i % tileColumns) * layout.width;
+            int y = (i / tileColumns) * layout.height;
+
+            WritableMap tile = Arguments.createMap();
+            tile.putInt("index", i);
+            tile.putDouble("time", time);
+            tile.putInt("x", x);
+            tile.putInt("y", y);
+            tiles.pushMap(tile);
+
+            JSONObject indexTile = new JSONObject();
+            indexTile.put("index", i);
+            indexTile.put("time", time);
+            indexTile.put("x", x);
+            indexTile.put("y", y);
+            indexTiles.put(indexTile);
+          }
+          index.put("image", uri);
+          index.put("columns", tileColumns);
+          index.put("rows", tileRows);
+          index.put("tileWidth", layout.width);
+          index.put("tileHeight", layout.height);
+          index.put("tiles", indexTiles);
+
+          File indexFile = new File(Uri.parse(uri).getPath() + ".json");
+          FileOutputStream fos = new FileOutputStream(indexFile);
+          try {
+            fos.write(index.toString().getBytes("UTF-8"));
+          } finally {
+            fos.close();
+          }
+          event.putString("index", "file://" + indexFile.getPath());
+        } catch (Exception e) {
+          promise.reject("getPreviewStoryboard error", "Failed to write the storyboard index. " + e.toString());
+          return;
+        }
+
+        event.putString("source", uri);
+        event.putString("jobId", jobId);
+        event.putInt("columns", tileColumns);
+        event.putInt("rows", tileRows);
+        event.putInt("tileWidth", layout.width);
+        event.putInt("tileHeight", layout.height);
+        event.putArray("tiles", tiles);
+        promise.resolve(event);
+      }
+
+      @Override
+      public void cancelAction() {
+        promise.reject(ERROR_CANCELLED, "getPreviewStoryboard error: cancelled. Job " + jobId);
+      }
+    };
+
+    File sprite = new File(ThumbnailWriter.getThumbnailDir(ctx), UUID.randomUUID().toString() + "-storyboard.jpeg");
+    long rangeMs = layout.endMs - layout.startMs;
+    // NOTE: "fps" PICKS ONE FRAME PER STEP, "tile" ASSEMBLES THEM. ONE DECODE, ONE OUTPUT FRAME
+    double fps = rangeMs > 0 ? layout.count * 1000.0 / rangeMs : 1;
+
+    ArrayList<String> cmd = new ArrayList<String>();
+    cmd.add("-y"); // NOTE: OVERWRITE OUTPUT FILE
+    if (layout.startMs > 0) {
+      cmd.add("-ss");
+      cmd.add(formatSeconds(layout.startMs / 1000.0));
+    }
+    // NOTE: INPUT FILE
+    cmd.add("-i");
+    cmd.add(source);
+    if (rangeMs > 0) {
+      cmd.add("-t");
+      cmd.add(formatSeconds(rangeMs / 1000.0));
+    }
+    cmd.add("-vf");
+    cmd.add(String.format(Locale.US, "fps=%.6f,scale=%d:%d,tile=%dx%d", fps, layout.width, layout.height, tileColumns, tileRows));
+    cmd.add("-frames:v");
+    cmd.add("1");
+    // NOTE: MJPEG QUALITY GOES FROM 2 (BEST) TO 31 (WORST)
+    cmd.add("-q:v");
+    cmd.add(Integer.toString(Math.round(31 - quality * 29 / 100f)));
+    // NOTE: OUTPUT FILE
+    cmd.add(sprite.getPath());
+
+    executeFfmpegCommand(new FfmpegCmdTaskParams(cmd, sprite.getPath(), ctx, promise, "getPreviewStoryboard error", cb)
+      .setJobOptions(options, FfmpegJobScheduler.Priority.INTERACTIVE)
+      .setJobId(jobId)
+      .setDurationMs(rangeMs));
+  }
+
+  /** Null when caching is disabled with {@code cache: false}. */
+  @Nullable
+  private static ThumbnailCache getThumbnailCache(Context ctx, @Nullable ReadableMap options) {
+    if (options != null && options.hasKey("cache") && !options.getBoolean("cache")) {
+      return null;
+    }
+    return ThumbnailCache.getInstance(ctx);
+  }
+
+  /**
+   * Encodes a preview frame the way {@link #extractPreviewImages} returns it, storing it in
+   * {@code cache} when a key is given.
+   */
+  private static String encodePreviewImage(Context ctx, Bitmap bmp, @Nullable String format, int quality, @Nullable ThumbnailCache cache, @Nullable String bitmapKey) throws IOException {
+    if (cache != null && bitmapKey != null) {
+      cache.putBitmap(bitmapKey, bmp);
+      return toPreviewImage(ctx, cache.put(ThumbnailCache.buildFileKey(bitmapKey, format, quality), bmp, format, quality), format);
+    }
+    if (!ThumbnailWriter.isFileFormat(format)) {
+      return "data:image/png;base64," + ThumbnailWriter.toBase64Png(bmp, quality);
     }
+    return ThumbnailWriter.writeFile(ctx, bmp, format, quality);
+  }
 
-    int duration = Integer.parseInt(mmr.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_DURATION));
-    int width = Integer.parseInt(mmr.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
-    int height = Integer.parseInt(mmr.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
-    int orientation = Integer.parseInt(mmr.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION));
-    if (orientation == 90 || orientation == 270) {
-      width = width + height;
-      height = width - height;
-      width = width - height;
+  @Nullable
+  private static String getCachedPreviewImage(Context ctx, ThumbnailCache cache, String bitmapKey, @Nullable String format, int quality) throws IOException {
+    String fileKey = ThumbnailCache.buildFileKey(bitmapKey, format, quality);
+    File file = cache.get(fileKey, format);
+    if (file != null) {
+      return toPreviewImage(ctx, file, format);
+    }
+    // NOTE: DECODED BEFORE FOR ANOTHER FORMAT, ONLY THE ENCODING IS MISSING
+    Bitmap bmp = cache.getBitmap(bitmapKey);
+    if (bmp != null) {
+      return toPreviewImage(ctx, cache.put(fileKey, bmp, format, quality), format);
+    }
+    return null;
+  }
+
+  /** Turns a {@link ThumbnailCache} file into a preview image. JS gets a copy, never the cache file. */
+  private static String toPreviewImage(Context ctx, File file, @Nullable String format) throws IOException {
+    if (ThumbnailWriter.isFileFormat(format)) {
+      return ThumbnailWriter.copyFile(ctx, file, format);
+    }
+    return "data:image/png;base64," + ThumbnailWriter.toBase64(file);
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+  public static void getVideoInfo(String path, Promise promise, ReactApplicationContext ctx) {
+    MediaProbe probe;
+    try {
+      probe = MediaProbe.probe(ctx, path);
+    } catch (Exception e) {
+      promise.reject("getVideoInfo error", e.toString());
+      return;
     }
 
     WritableMap event = Arguments.createMap();
     WritableMap size = Arguments.createMap();
 
-    size.putInt(Events.WIDTH, width);
-    size.putInt(Events.HEIGHT, height);
+    size.putInt(Events.WIDTH, probe.getDisplayWidth());
+    size.putInt(Events.HEIGHT, probe.getDisplayHeight());
 
     event.putMap(Events.SIZE, size);
-    event.putInt(Events.DURATION, duration / 1000);
-    event.putInt(Events.ORIENTATION, orientation);
+    event.putInt(Events.DURATION, (int) (probe.durationMs / 1000));
+    event.putInt(Events.ORIENTATION, probe.rotation);
 
     promise.resolve(event);
+  }
 
-    mmr.release();
+  /**
+   * Everything {@link MediaProbe} knows about {@code path}. Durations are in seconds,
+   * bitrate in bits per second. Unknown values are 0 (-1 for keyframeInterval).
+   */
+  static void probe(String path, Promise promise, ReactApplicationContext ctx) {
+    MediaProbe probe;
+    try {
+      probe = MediaProbe.probe(ctx, path);
+    } catch (Exception e) {
+      promise.reject("probe error", e.toString());
+      return;
+    }
+
+    WritableMap event = Arguments.createMap();
+    WritableMap size = Arguments.createMap();
+    size.putInt(Events.WIDTH, probe.getDisplayWidth());
+    size.putInt(Events.HEIGHT, probe.getDisplayHeight());
+
+    event.putMap(Events.SIZE, size);
+    event.putDouble(Events.DURATION, probe.durationMs / 1000.0);
+    event.putInt(Events.ORIENTATION, probe.rotation);
+    event.putString("videoCodec", probe.videoCodec);
+    event.putString("audioCodec", probe.audioCodec);
+    event.putBoolean("hasAudio", probe.hasAudio);
+    event.putDouble("bitrate", probe.bitrate);
+    event.putDouble("fps", probe.fps);
+    event.putDouble("fileSize", probe.fileSize);
+    double keyframeIntervalMs = probe.getKeyframeIntervalMs();
+    event.putDouble("keyframeInterval", keyframeIntervalMs >= 0 ? keyframeIntervalMs / 1000 : -1);
+
+    promise.resolve(event);
   }
 
   static void trim(ReadableMap options, final Promise promise, ReactApplicationContext ctx) {
     String source = options.getString("source");
     String startTime = options.getString("startTime");
     String endTime = options.getString("endTime");
+    String mode = options.hasKey("mode") ? options.getString("mode") : TRIM_MODE_ACCURATE;
+
+    String cacheKey = OutputCache.buildKey(ctx, "trim", source, options);
+    if (resolveFromOutputCache(cacheKey, options, promise, null, ctx)) {
+      return;
+    }
+
+    if (TRIM_MODE_FAST.equals(mode)) {
+      double[] snapped = getSyncSampleAlignedRange(source, startTime, endTime);
+      if (snapped != null) {
+        trimWithStreamCopy(source, snapped[0], snapped[1], options, promise, ctx, cacheKey);
+        return;
+      }
+      Log.d(LOG_TAG, "trim: can't find sync samples for " + source + ", falling back to accurate mode");
+    }
 
     final File tempFile = createTempFile("mp4", promise, ctx);
 
@@ -371,7 +928,303 @@ public class Trimmer {
     // NOTE: OUTPUT FILE
     cmd.add(tempFile.getPath());
 
-    executeFfmpegCommand(cmd, tempFile.getPath(), ctx, promise, "Trim error", null);
+    long startMs = Math.max(0, parseTimeToMs(startTime));
+    long endMs = parseTimeToMs(endTime);
+    long durationMs = Math.max(0, endMs - startMs);
+
+    WritableMap result = Arguments.createMap();
+    result.putString("mode", TRIM_MODE_ACCURATE);
+    result.putDouble("startTime", startMs / 1000.0);
+    result.putDouble("endTime", endMs / 1000.0);
+
+    executeFfmpegCommand(new FfmpegCmdTaskParams(cmd, tempFile.getPath(), ctx, promise, "Trim error", null)
+      .setJobOptions(options, FfmpegJobScheduler.Priority.INTERACTIVE)
+      .setDurationMs(durationMs)
+      .setExtraResult(result)
+      .setCacheKey(cacheKey));
+  }
+
+  @Nullable
+  private static double[] getSyncSampleAlignedRange(String source, String startTime, String endTime) {
+    File sourceFile = VideoEdit.getLocalFile(source);
+    long startMs = parseTimeToMs(startTime);
+    long endMs = parseTimeToMs(endTime);
+    if (sourceFile == null || !sourceFile.exists() || startMs < 0 || endMs <= startMs) {
+      return null;
+    }
+    try {
+      return VideoEdit.snapToSyncSamples(sourceFile, startMs / 1000.0, endMs / 1000.0);
+    } catch (Exception e) {
+      Log.d(LOG_TAG, "getSyncSampleAlignedRange: " + e.toString());
+      return null;
+    }
+  }
+
+  private static void trimWithStreamCopy(String source, double startSec, double endSec, ReadableMap options, final Promise promise, ReactApplicationContext ctx, @Nullable String cacheKey) {
+    final File tempFile = createTempFile("mp4", promise, ctx);
+
+    ArrayList<String> cmd = new ArrayList<String>();
+    cmd.add("-y"); // NOTE: OVERWRITE OUTPUT FILE
+
+    // NOTE: "-ss" BEFORE "-i" SEEKS IN THE DEMUXER. START IS ALREADY ON A SYNC SAMPLE,
+    // SO NO FRAMES HAVE TO BE DECODED TO GET THERE
+    cmd.add("-ss");
+    cmd.add(formatSeconds(startSec));
+
+    // NOTE: INPUT FILE
+    cmd.add("-i");
+    cmd.add(source);
+
+    cmd.add("-t");
+    cmd.add(formatSeconds(endSec - startSec));
+
+    // NOTE: NO RE-ENCODING. COPY BOTH STREAMS AS THEY ARE
+    cmd.add("-c");
+    cmd.add("copy");
+    cmd.add("-avoid_negative_ts");
+    cmd.add("make_zero");
+    // NOTE: OUTPUT FILE
+    cmd.add(tempFile.getPath());
+
+    WritableMap result = Arguments.createMap();
+    result.putString("mode", TRIM_MODE_FAST);
+    result.putDouble("startTime", startSec);
+    result.putDouble("endTime", endSec);
+
+    long durationMs = Math.round((endSec - startSec) * 1000);
+    executeFfmpegCommand(new FfmpegCmdTaskParams(cmd, tempFile.getPath(), ctx, promise, "Trim error", null)
+      .setJobOptions(options, FfmpegJobScheduler.Priority.INTERACTIVE)
+      .setDurationMs(durationMs)
+      .setExtraResult(result)
+      .setCacheKey(cacheKey));
+  }
+
+  private static String formatSeconds(double seconds) {
+    return String.format(Locale.US, "%.3f", seconds);
+  }
+
+  private static class TrimSegment {
+    final int index;
+    final long startMs;
+    final long endMs;
+    // NOTE: NUMBER OF THE FILE PRODUCED BY THE SEGMENT MUXER FOR THIS SEGMENT
+    int piece = -1;
+    boolean reported = false;
+
+    TrimSegment(int index, long startMs, long endMs) {
+      this.index = index;
+      this.startMs = startMs;
+      this.endMs = endMs;
+    }
+  }
+
+  /**
+   * Cuts several clips out of one source with a single ffmpeg process.
+   *
+   * The range from the first start to the last end is decoded once and split by the segment
+   * muxer at every segment boundary, so each requested segment becomes one output file.
+   * Pieces that fall into gaps between segments are deleted. Segments must not overlap.
+   */
+  static void trimSegments(String source, ReadableArray segments, ReadableMap options, final Promise promise, final ReactApplicationContext ctx) {
+    if (segments.size() == 0) {
+      promise.reject("Trim segments error", "Expected at least one segment");
+      return;
+    }
+
+    final ArrayList<TrimSegment> sorted = new ArrayList<TrimSegment>();
+    for (int i = 0; i < segments.size(); i++) {
+      ReadableMap segment = segments.getMap(i);
+      long startMs = readTimeMs(segment, "startTime");
+      long endMs = readTimeMs(segment, "endTime");
+      if (startMs < 0 || endMs <= startMs) {
+        promise.reject("Trim segments error", "Segment " + i + " has an invalid time range");
+        return;
+      }
+      sorted.add(new TrimSegment(i, startMs, endMs));
+    }
+    Collections.sort(sorted, new Comparator<TrimSegment>() {
+      @Override
+      public int compare(TrimSegment a, TrimSegment b) {
+        return a.startMs < b.startMs ? -1 : (a.startMs == b.startMs ? 0 : 1);
+      }
+    });
+
+    final long rangeStartMs = sorted.get(0).startMs;
+    final long rangeEndMs = sorted.get(sorted.size() - 1).endMs;
+
+    // NOTE: CUT POINTS ARE RELATIVE TO "rangeStartMs". PIECE "j" ENDS AT "cutPoints[j]"
+    final ArrayList<Long> cutPoints = new ArrayList<Long>();
+    int piece = 0;
+    long lastEndMs = rangeStartMs;
+    for (int i = 0; i < sorted.size(); i++) {
+      TrimSegment segment = sorted.get(i);
+      if (segment.startMs < lastEndMs) {
+        promise.reject("Trim segments error", "Segment " + segment.index + " overlaps another segment");
+        return;
+      }
+      if (segment.startMs > lastEndMs) {
+        // NOTE: GAP BEFORE THIS SEGMENT
+        cutPoints.add(segment.startMs - rangeStartMs);
+        piece++;
+      }
+      segment.piece = piece;
+      if (i < sorted.size() - 1) {
+        cutPoints.add(segment.endMs - rangeStartMs);
+        piece++;
+      }
+      lastEndMs = segment.endMs;
+    }
+    final int pieceCount = piece + 1;
+
+    final String outputPattern = new File(ctx.getCacheDir(), UUID.randomUUID().toString() + "-segment-%03d.mp4").getPath();
+    final String jobId = getJobId(options);
+
+    ArrayList<String> cutPointsInSeconds = new ArrayList<String>();
+    for (Long cutPoint : cutPoints) {
+      cutPointsInSeconds.add(formatSeconds(cutPoint / 1000.0));
+    }
+
+    ArrayList<String> cmd = new ArrayList<String>();
+    cmd.add("-y"); // NOTE: OVERWRITE OUTPUT FILE
+
+    cmd.add("-ss");
+    cmd.add(formatSeconds(rangeStartMs / 1000.0));
+
+    // NOTE: INPUT FILE
+    cmd.add("-i");
+    cmd.add(source);
+
+    cmd.add("-t");
+    cmd.add(formatSeconds((rangeEndMs - rangeStartMs) / 1000.0));
+
+    if (!cutPoints.isEmpty()) {
+      // NOTE: THE SEGMENT MUXER CAN ONLY SPLIT ON KEYFRAMES, SO PUT ONE ON EVERY CUT POINT
+      cmd.add("-force_key_frames");
+      cmd.add(TextUtils.join(",", cutPointsInSeconds));
+    }
+
+    cmd.add("-preset");
+    cmd.add("ultrafast");
+    // NOTE: DO NOT CONVERT AUDIO TO SAVE TIME
+    cmd.add("-c:a");
+    cmd.add("copy");
+    // NOTE: FLAG TO CONVER "AAC" AUDIO CODEC
+    cmd.add("-strict");
+    cmd.add("-2");
+
+    cmd.add("-f");
+    cmd.add("segment");
+    if (!cutPoints.isEmpty()) {
+      cmd.add("-segment_times");
+      cmd.add(TextUtils.join(",", cutPointsInSeconds));
+    }
+    cmd.add("-segment_format");
+    cmd.add("mp4");
+    cmd.add("-reset_timestamps");
+    cmd.add("1");
+    // NOTE: OUTPUT FILES
+    cmd.add(outputPattern);
+
+    OnFfmpegProgressListener progressListener = new OnFfmpegProgressListener() {
+      @Override
+      public void onProgress(long encodedTimeMs, boolean ended) {
+        // NOTE: "out_time" CAN PASS A CUT POINT (INTERLEAVED AUDIO) BEFORE THE MUXER SPLITS ON THE NEXT
+        // KEYFRAME. IT WRITES THE TRAILER OF A PIECE BEFORE OPENING THE NEXT ONE, SO ONLY A PIECE
+        // WHOSE SUCCESSOR EXISTS ON DISK IS COMPLETE
+        for (TrimSegment segment : sorted) {
+          if (!segment.reported && segment.piece < cutPoints.size() && encodedTimeMs > cutPoints.get(segment.piece)
+            && new File(getSegmentPiecePath(outputPattern, segment.piece + 1)).exists()) {
+            reportTrimSegment(ctx, jobId, segment, getSegmentPiecePath(outputPattern, segment.piece));
+          }
+        }
+      }
+    };
+
+    OnCompressVideoListener cb = new OnCompressVideoListener() {
+      @Override
+      public void onError(String message) {
+        deleteSegmentPieces(outputPattern, pieceCount, null);
+        promise.reject("trimSegments error", message);
+      }
+
+      @Override
+      public void onCompressStarted() {
+      }
+
+      @Override
+      public void onSuccess(String uri) {
+        String[] sources = new String[sorted.size()];
+        HashSet<Integer> keep = new HashSet<Integer>();
+        for (TrimSegment segment : sorted) {
+          String piecePath = getSegmentPiecePath(outputPattern, segment.piece);
+          if (!segment.reported) {
+            reportTrimSegment(ctx, jobId, segment, piecePath);
+          }
+          sources[segment.index] = "file://" + piecePath;
+          keep.add(segment.piece);
+        }
+        deleteSegmentPieces(outputPattern, pieceCount, keep);
+
+        WritableArray sourcesArray = Arguments.createArray();
+        for (String segmentSource : sources) {
+          sourcesArray.pushString(segmentSource);
+        }
+        WritableMap event = Arguments.createMap();
+        event.putArray("sources", sourcesArray);
+        event.putString("jobId", jobId);
+        promise.resolve(event);
+      }
+
+      @Override
+      public void cancelAction() {
+        deleteSegmentPieces(outputPattern, pieceCount, null);
+        promise.reject(ERROR_CANCELLED, "Trim segments error: cancelled. Job " + jobId);
+      }
+    };
+
+    executeFfmpegCommand(new FfmpegCmdTaskParams(cmd, outputPattern, ctx, null, "Trim segments error", cb)
+      .setJobOptions(options, FfmpegJobScheduler.Priority.INTERACTIVE)
+      .setJobId(jobId)
+      .setDurationMs(rangeEndMs - rangeStartMs)
+      .setProgressListener(progressListener));
+  }
+
+  private static String getSegmentPiecePath(String outputPattern, int piece) {
+    return String.format(Locale.US, outputPattern, piece);
+  }
+
+  private static void deleteSegmentPieces(String outputPattern, int pieceCount, @Nullable Set<Integer> keep) {
+    for (int piece = 0; piece < pieceCount; piece++) {
+      if (keep != null && keep.contains(piece)) {
+        continue;
+      }
+      File pieceFile = new File(getSegmentPiecePath(outputPattern, piece));
+      if (pieceFile.exists() && !pieceFile.delete()) {
+        Log.d(LOG_TAG, "Failed to delete segment piece: " + pieceFile.getPath());
+      }
+    }
+  }
+
+  private static void reportTrimSegment(ReactContext ctx, String jobId, TrimSegment segment, String piecePath) {
+    segment.reported = true;
+
+    WritableMap event = Arguments.createMap();
+    event.putString("jobId", jobId);
+    event.putInt("index", segment.index);
+    event.putString("source", "file://" + piecePath);
+    event.putDouble("startTime", segment.startMs / 1000.0);
+    event.putDouble("endTime", segment.endMs / 1000.0);
+    emitDeviceEvent(ctx, Events.FFMPEG_SEGMENT_COMPLETE, event);
+  }
+
+  private static long readTimeMs(ReadableMap map, String key) {
+    if (!map.hasKey(key) || map.isNull(key)) {
+      return -1;
+    }
+    if (map.getType(key) == ReadableType.Number) {
+      return Math.round(map.getDouble(key) * 1000);
+    }
+    return parseTimeToMs(map.getString(key));
   }
 
   private static ReadableMap formatWidthAndHeightForFfmpeg(int width, int height, int availableVideoWidth, int availableVideoHeight) {
@@ -399,16 +1252,9 @@ public class Trimmer {
   private static ReadableMap getVideoWidthAndHeight(String source, Context ctx) {
     Log.d(LOG_TAG, "getVideoWidthAndHeight: " + source);
 
-    FFmpegMediaMetadataRetriever retriever = new FFmpegMediaMetadataRetriever();
-    if (VideoEdit.shouldUseURI(source)) {
-      retriever.setDataSource(ctx, Uri.parse(source));
-    } else {
-      retriever.setDataSource(source);
-    }
-
-    int width = Integer.parseInt(retriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
-    int height = Integer.parseInt(retriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
-    retriever.release();
+    MediaProbe probe = MediaProbe.probe(ctx, source);
+    int width = probe.width;
+    int height = probe.height;
 
     Log.d(LOG_TAG, "getVideoWidthAndHeight: " + Integer.toString(width));
     Log.d(LOG_TAG, "getVideoWidthAndHeight: " + Integer.toString(height));
@@ -419,12 +1265,26 @@ public class Trimmer {
     return sizes;
   }
 
+  private static long getVideoDuration(String source, Context ctx) {
+    try {
+      return MediaProbe.probe(ctx, source).durationMs;
+    } catch (Exception e) {
+      Log.d(LOG_TAG, "getVideoDuration: failed for " + source + ". " + e.toString());
+      return 0;
+    }
+  }
+
 
 
   public static void compress(String source, ReadableMap options, final Promise promise, final OnCompressVideoListener cb, ThemedReactContext tctx, ReactApplicationContext rctx) {
     Log.d(LOG_TAG, "OPTIONS: " + options.toString());
 
-    Context ctx = tctx != null ? tctx : rctx;
+    ReactContext ctx = tctx != null ? tctx : rctx;
+
+    String cacheKey = OutputCache.buildKey(ctx, "compress", source, options);
+    if (resolveFromOutputCache(cacheKey, options, promise, cb, ctx)) {
+      return;
+    }
 
     ReadableMap videoSizes = getVideoWidthAndHeight(source, ctx);
     int videoWidth = videoSizes.getInt("width");
@@ -448,6 +1308,39 @@ public class Trimmer {
     Double bitrateMultiplier = options.hasKey("bitrateMultiplier") ? options.getDouble("bitrateMultiplier") : null;
     Boolean removeAudio = options.hasKey("removeAudio") ? options.getBoolean("removeAudio") : false;
 
+    long targetSizeBytes = options.hasKey("targetSizeBytes") && !options.isNull("targetSizeBytes") ? (long) options.getDouble("targetSizeBytes") : 0;
+
+    boolean passthrough = !options.hasKey("passthrough") || options.getBoolean("passthrough");
+
+    MediaProbe probe = MediaProbe.probe(ctx, source);
+    long rateTarget = getCompressTargetBitrate(probe.bitrate, minimumBitrate, bitrateMultiplier);
+    long targetBitrate = rateTarget;
+    boolean keepAudio = !removeAudio && probe.hasAudio;
+    if (targetSizeBytes > 0) {
+      long sizeBitrate = getTargetSizeVideoBitrate(targetSizeBytes, probe.durationMs, keepAudio ? TARGET_SIZE_AUDIO_BITRATE : 0);
+      if (sizeBitrate <= 0) {
+        String errorMessage = "'targetSizeBytes' of " + targetSizeBytes + " can't fit a video of " + probe.durationMs + "ms";
+        if (cb != null) {
+          cb.onError(errorMessage);
+        } else if (promise != null) {
+          promise.reject("compress error", errorMessage);
+        }
+        return;
+      }
+      targetBitrate = targetBitrate > 0 ? Math.min(targetBitrate, sizeBitrate) : sizeBitrate;
+    }
+    if (passthrough && canSkipCompressEncode(probe, width, height, rateTarget, targetSizeBytes)) {
+      // NOTE: RE-ENCODING WOULD ONLY LOSE QUALITY WITHOUT MAKING THE FILE SMALLER
+      if (!needsCompressRemux(source, probe, removeAudio)) {
+        Log.d(LOG_TAG, "compress: encoding can't help, returning the source");
+        resolveCompressSkipped(source, probe.fileSize, promise, cb);
+      } else {
+        Log.d(LOG_TAG, "compress: encoding can't help, remuxing the source");
+        remuxForCompress(source, probe, removeAudio, options, cacheKey, promise, cb, ctx);
+      }
+      return;
+    }
+
     final File mediaFile = createMediaFile( promise, ctx);
 
 
@@ -459,9 +1352,6 @@ public class Trimmer {
     cmd.add("-hwaccel"); //add param
     cmd.add("auto");//add param
 
-    cmd.add("-threads");
-    cmd.add("6");
-
     cmd.add("-y");
 
     cmd.add("-i");
@@ -486,8 +1376,20 @@ public class Trimmer {
 
     //debug start
 
-    cmd.add("-crf");
-    cmd.add("28");
+    if (targetBitrate > 0) {
+      // NOTE: ABR WITH A VBV CAP, SO THE OUTPUT SIZE FOLLOWS THE TARGET INSTEAD OF THE CONTENT
+      cmd.add("-b:v");
+      cmd.add(Long.toString(targetBitrate));
+      cmd.add("-maxrate");
+      cmd.add(Long.toString(targetBitrate));
+      cmd.add("-bufsize");
+      // NOTE: A ONE SECOND BUFFER KEEPS A SIZE TARGET TIGHT IN A SINGLE PASS. TWO-PASS WOULD NEED
+      // A WRITABLE PASSLOG NEXT TO FFMPEG'S WORKING DIRECTORY ("/") AND DOUBLES THE DECODE COST
+      cmd.add(Long.toString(targetSizeBytes > 0 ? targetBitrate : targetBitrate * 2));
+    } else {
+      cmd.add("-crf");
+      cmd.add("28");
+    }
 
     //cmd.add("-strict");
     //cmd.add("experimental");
@@ -499,10 +1401,305 @@ public class Trimmer {
 
     if (removeAudio) {
       cmd.add("-an");
+    } else if (targetSizeBytes > 0 && keepAudio) {
+      // NOTE: THE AUDIO BUDGET WAS TAKEN OUT OF THE TARGET SIZE, SO IT MUST NOT BE EXCEEDED
+      cmd.add("-c:a");
+      cmd.add("aac");
+      cmd.add("-b:a");
+      cmd.add(Long.toString(TARGET_SIZE_AUDIO_BITRATE));
+      cmd.add("-strict");
+      cmd.add("-2");
     }
     cmd.add(mediaFile.getPath());
 
-    executeFfmpegCommand(cmd, mediaFile.getPath(), rctx, promise, "compress error", cb);
+    WritableMap result = null;
+    if (targetSizeBytes > 0) {
+      result = Arguments.createMap();
+      result.putDouble("targetSize", targetSizeBytes);
+      result.putDouble("videoBitrate", targetBitrate);
+    }
+    executeFfmpegCommand(new FfmpegCmdTaskParams(cmd, mediaFile.getPath(), ctx, promise, "compress error", cb)
+      .setJobOptions(options, FfmpegJobScheduler.Priority.BACKGROUND)
+      .setDurationMs(probe.durationMs)
+      .setExtraResult(result)
+      .setCacheKey(cacheKey));
+  }
+
+  /**
+   * Target video bitrate for "compress", in bits per second, or -1 without "minimumBitrate" and
+   * "bitrateMultiplier" (CRF mode). Same rules as on iOS: the source bitrate divided by the
+   * multiplier, but not below "minimumBitrate" unless the source itself is below it.
+   */
+  static long getCompressTargetBitrate(long sourceBitrate, @Nullable Double minimumBitrate, @Nullable Double bitrateMultiplier) {
+    if (minimumBitrate == null && bitrateMultiplier == null) {
+      return -1;
+    }
+    double multiplier = bitrateMultiplier != null && bitrateMultiplier > 0 ? bitrateMultiplier : 1;
+    double target = sourceBitrate > 0 ? sourceBitrate / multiplier : 0;
+    if (minimumBitrate != null) {
+      target = Math.max(target, minimumBitrate);
+      if (sourceBitrate > 0 && sourceBitrate < minimumBitrate) {
+        target = sourceBitrate;
+      }
+    }
+    return target > 0 ? Math.round(target) : -1;
+  }
+
+  /**
+   * Video bitrate that makes a {@code durationMs} long output land at {@code targetSizeBytes},
+   * after taking out the audio and a small container overhead. Returns -1 if nothing is left
+   * for the video.
+   */
+  static long getTargetSizeVideoBitrate(long targetSizeBytes, long durationMs, long audioBitrate) {
+    if (durationMs <= 0) {
+      return -1;
+    }
+    double totalBitrate = targetSizeBytes * 8 * (1 - TARGET_SIZE_CONTAINER_OVERHEAD) * 1000.0 / durationMs;
+    long videoBitrate = Math.round(totalBitrate - audioBitrate);
+    return videoBitrate >= MIN_TARGET_SIZE_VIDEO_BITRATE ? videoBitrate : -1;
+  }
+
+  /**
+   * Pre-flight for "compress": true when the source is already H.264, no bigger than the
+   * requested size and within the requested bitrate/size. Without a bitrate or size target
+   * there is nothing to check against, so the source is always encoded, as before.
+   *
+   * {@code width}/{@code height} were rounded to even values against the stored (unrotated)
+   * dimensions, so they are compared with those, rounded the same way.
+   */
+  private static boolean canSkipCompressEncode(MediaProbe probe, int width, int height, long rateTarget, long targetSizeBytes) {
+    if (rateTarget <= 0 && targetSizeBytes <= 0) {
+      return false;
+    }
+    if (probe.videoCodec == null || !probe.videoCodec.toLowerCase(Locale.US).contains("h264")) {
+      return false;
+    }
+    if (width != 0 && height != 0 && (width < (probe.width & ~1) || height < (probe.height & ~1))) {
+      return false;
+    }
+    if (rateTarget > 0 && (probe.bitrate <= 0 || probe.bitrate > rateTarget)) {
+      return false;
+    }
+    return targetSizeBytes <= 0 || (probe.fileSize > 0 && probe.fileSize <= targetSizeBytes);
+  }
+
+  /** True when a skipped encode still needs a stream copy into a new MP4, rather than the source as is. */
+  private static boolean needsCompressRemux(String source, MediaProbe probe, boolean removeAudio) {
+    if (removeAudio && probe.hasAudio) {
+      return true;
+    }
+    if (probe.hasAudio && !isMp4CompatibleAudio(probe.audioCodec)) {
+      return true;
+    }
+    String path = Uri.parse(source).getPath();
+    String lowerPath = path != null ? path.toLowerCase(Locale.US) : "";
+    return !(lowerPath.endsWith(".mp4") || lowerPath.endsWith(".m4v"));
+  }
+
+  private static boolean isMp4CompatibleAudio(@Nullable String audioCodec) {
+    if (audioCodec == null) {
+      return false;
+    }
+    String codec = audioCodec.toLowerCase(Locale.US);
+    return codec.contains("aac") || codec.contains("mp3");
+  }
+
+  /** Copies the video stream of {@code source} into an MP4, fixing up audio on the way. Much cheaper than an encode. */
+  private static void remuxForCompress(String source, MediaProbe probe, boolean removeAudio, ReadableMap options, String cacheKey, @Nullable Promise promise, @Nullable OnCompressVideoListener cb, ReactContext ctx) {
+    final File mediaFile = createMediaFile(promise, ctx);
+
+    ArrayList<String> cmd = new ArrayList<String>();
+    cmd.add("-y");
+    cmd.add("-i");
+    cmd.add(source);
+    cmd.add("-c:v");
+    cmd.add("copy");
+    if (removeAudio) {
+      cmd.add("-an");
+    } else if (isMp4CompatibleAudio(probe.audioCodec)) {
+      cmd.add("-c:a");
+      cmd.add("copy");
+    } else {
+      cmd.add("-c:a");
+      cmd.add("aac");
+      cmd.add("-strict");
+      cmd.add("-2");
+    }
+    cmd.add(mediaFile.getPath());
+
+    WritableMap result = Arguments.createMap();
+    result.putBoolean("skipped", true);
+    result.putBoolean("remuxed", true);
+    executeFfmpegCommand(new FfmpegCmdTaskParams(cmd, mediaFile.getPath(), ctx, promise, "compress error", cb)
+      .setJobOptions(options, FfmpegJobScheduler.Priority.BACKGROUND)
+      .setDurationMs(probe.durationMs)
+      .setExtraResult(result)
+      .setCacheKey(cacheKey));
+  }
+
+  /** Hands the untouched source back from "compress", flagged with {@code skipped: true}. */
+  private static void resolveCompressSkipped(String source, long size, @Nullable Promise promise, @Nullable OnCompressVideoListener cb) {
+    if (cb != null) {
+      cb.onSuccess(source);
+    } else if (promise != null) {
+      WritableMap event = Arguments.createMap();
+      event.putString("source", source);
+      if (size > 0) {
+        event.putDouble("size", size);
+      }
+      event.putBoolean("skipped", true);
+      promise.resolve(event);
+    }
+  }
+
+  /**
+   * Runs trim, crop, scale and encode as one ffmpeg pass: a single decode, one filter chain
+   * ("crop" then "scale") and a single encode. Chaining trim -> crop -> compress instead
+   * costs three processes, three generations of quality loss and two intermediate files.
+   */
+  static void process(String source, ReadableMap options, final Promise promise, ReactApplicationContext ctx) {
+    String cacheKey = OutputCache.buildKey(ctx, "process", source, options);
+    if (resolveFromOutputCache(cacheKey, options, promise, null, ctx)) {
+      return;
+    }
+
+    ReadableMap trimOptions = options.hasKey("trim") && !options.isNull("trim") ? options.getMap("trim") : null;
+    ReadableMap cropOptions = options.hasKey("crop") && !options.isNull("crop") ? options.getMap("crop") : null;
+    ReadableMap scaleOptions = options.hasKey("scale") && !options.isNull("scale") ? options.getMap("scale") : null;
+    ReadableMap encoderOptions = options.hasKey("encoder") && !options.isNull("encoder") ? options.getMap("encoder") : null;
+
+    ArrayList<String> filters = new ArrayList<String>();
+    int outputWidth = 0;
+    int outputHeight = 0;
+
+    if (cropOptions != null || scaleOptions != null) {
+      ReadableMap videoSizes = getVideoWidthAndHeight(source, ctx);
+      outputWidth = videoSizes.getInt("width");
+      outputHeight = videoSizes.getInt("height");
+    }
+
+    if (cropOptions != null) {
+      int cropWidth = (int)( cropOptions.getDouble("cropWidth") );
+      int cropHeight = (int)( cropOptions.getDouble("cropHeight") );
+      int cropOffsetX = cropOptions.hasKey("cropOffsetX") ? (int)( cropOptions.getDouble("cropOffsetX") ) : 0;
+      int cropOffsetY = cropOptions.hasKey("cropOffsetY") ? (int)( cropOptions.getDouble("cropOffsetY") ) : 0;
+
+      ReadableMap sizes = formatWidthAndHeightForFfmpeg(
+        cropWidth,
+        cropHeight,
+        // NOTE: MUST CHECK AGAINST "CROPPABLE" WIDTH/HEIGHT. NOT FULL WIDTH/HEIGHT
+        outputWidth - cropOffsetX,
+        outputHeight - cropOffsetY
+      );
+      cropWidth = sizes.getInt("width");
+      cropHeight = sizes.getInt("height");
+
+      filters.add("crop=" + Integer.toString(cropWidth) + ":" + Integer.toString(cropHeight) + ":" + Integer.toString(cropOffsetX) + ":" + Integer.toString(cropOffsetY));
+      outputWidth = cropWidth;
+      outputHeight = cropHeight;
+    }
+
+    if (scaleOptions != null) {
+      int width = scaleOptions.hasKey("width") ? (int)( scaleOptions.getDouble("width") ) : 0;
+      int height = scaleOptions.hasKey("height") ? (int)( scaleOptions.getDouble("height") ) : 0;
+
+      if ( width != 0 && height != 0 && outputWidth != 0 && outputHeight != 0 ) {
+        ReadableMap sizes = formatWidthAndHeightForFfmpeg(
+          width,
+          height,
+          outputWidth,
+          outputHeight
+        );
+        width = sizes.getInt("width");
+        height = sizes.getInt("height");
+      }
+      if ( width != 0 && height != 0 ) {
+        filters.add("scale=" + Integer.toString(width) + ":" + Integer.toString(height));
+        outputWidth = width;
+        outputHeight = height;
+      }
+    }
+
+    long startMs = trimOptions != null ? readTimeMs(trimOptions, "startTime") : -1;
+    long endMs = trimOptions != null ? readTimeMs(trimOptions, "endTime") : -1;
+    if (startMs >= 0 && endMs >= 0 && endMs <= startMs) {
+      promise.reject("Process error", "'trim.endTime' must be greater than 'trim.startTime'");
+      return;
+    }
+
+    String preset = encoderOptions != null && encoderOptions.hasKey("preset") ? encoderOptions.getString("preset") : "ultrafast";
+    String tune = encoderOptions != null && encoderOptions.hasKey("tune") ? encoderOptions.getString("tune") : null;
+    int crf = encoderOptions != null && encoderOptions.hasKey("crf") ? (int)( encoderOptions.getDouble("crf") ) : 23;
+    boolean removeAudio = encoderOptions != null && encoderOptions.hasKey("removeAudio") && encoderOptions.getBoolean("removeAudio");
+
+    final File tempFile = createTempFile("mp4", promise, ctx);
+
+    ArrayList<String> cmd = new ArrayList<String>();
+    cmd.add("-y"); // NOTE: OVERWRITE OUTPUT FILE
+
+    // NOTE: WE RE-ENCODE ANYWAY, SO SEEKING BEFORE "-i" IS STILL FRAME-ACCURATE
+    // AND DOESN'T DECODE EVERYTHING BEFORE THE START TIME
+    if (startMs > 0) {
+      cmd.add("-ss");
+      cmd.add(formatSeconds(startMs / 1000.0));
+    }
+
+    // NOTE: INPUT FILE
+    cmd.add("-i");
+    cmd.add(source);
+
+    if (endMs > 0) {
+      cmd.add("-t");
+      cmd.add(formatSeconds((endMs - Math.max(0, startMs)) / 1000.0));
+    }
+
+    if (!filters.isEmpty()) {
+      cmd.add("-vf");
+      cmd.add(TextUtils.join(",", filters));
+    }
+
+    cmd.add("-c:v");
+    cmd.add("libx264");
+
+    cmd.add("-preset");
+    cmd.add(preset);
+
+    if (tune != null) {
+      cmd.add("-tune");
+      cmd.add(tune);
+    }
+
+    cmd.add("-crf");
+    cmd.add(Integer.toString(crf));
+
+    if (removeAudio) {
+      cmd.add("-an");
+    } else {
+      // NOTE: DO NOT CONVERT AUDIO TO SAVE TIME
+      cmd.add("-c:a");
+      cmd.add("copy");
+    }
+    // NOTE: FLAG TO CONVER "AAC" AUDIO CODEC
+    cmd.add("-strict");
+    cmd.add("-2");
+    // NOTE: OUTPUT FILE
+    cmd.add(tempFile.getPath());
+
+    long durationMs = endMs > 0
+      ? endMs - Math.max(0, startMs)
+      : Math.max(0, getVideoDuration(source, ctx) - Math.max(0, startMs));
+
+    WritableMap result = Arguments.createMap();
+    if (outputWidth != 0 && outputHeight != 0) {
+      result.putInt(Events.WIDTH, outputWidth);
+      result.putInt(Events.HEIGHT, outputHeight);
+    }
+
+    executeFfmpegCommand(new FfmpegCmdTaskParams(cmd, tempFile.getPath(), ctx, promise, "Process error", null)
+      .setJobOptions(options, FfmpegJobScheduler.Priority.BACKGROUND)
+      .setDurationMs(durationMs)
+      .setExtraResult(result)
+      .setCacheKey(cacheKey));
   }
 
   private static File createMediaFile(final Promise promise, Context ctx) {
@@ -546,55 +1743,81 @@ public class Trimmer {
     return tempFile;
   }
 
-  static void getPreviewImageAtPosition(String source, double sec, String format, final Promise promise, ReactApplicationContext ctx) {
-    FFmpegMediaMetadataRetriever metadataRetriever = new FFmpegMediaMetadataRetriever();
-    FFmpegMediaMetadataRetriever.IN_PREFERRED_CONFIG = Bitmap.Config.ARGB_8888;
-    metadataRetriever.setDataSource(source);
+  static void getPreviewImageAtPosition(String source, double sec, String format, int quality, @Nullable String accuracy, boolean useCache, final Promise promise, ReactApplicationContext ctx) {
+    if ( !ThumbnailWriter.isSupportedFormat(format) ) {
+      promise.reject("Wrong format error", WRONG_FORMAT_MESSAGE);
+      return;
+    }
+    if ( !VideoEdit.isSupportedFrameAccuracy(accuracy) ) {
+      promise.reject("Wrong accuracy error", "Wrong 'accuracy'. Expected one of 'keyframe' or 'exact'.");
+      return;
+    }
 
-    Bitmap bmp = metadataRetriever.getFrameAtTime((long) (sec * 1000000));
+    // NOTE: FULL-SIZE FRAMES ARE TOO BIG FOR THE MEMORY LEVEL, ONLY THE DISK LEVEL IS USED
+    ThumbnailCache cache = useCache ? ThumbnailCache.getInstance(ctx) : null;
+    SourceFingerprint fingerprint = cache != null ? SourceFingerprint.compute(ctx, source) : null;
+    String fileKey = fingerprint != null
+      ? ThumbnailCache.buildFileKey(ThumbnailCache.buildBitmapKey(fingerprint, (long) (sec * 1000000), 0, 0, accuracy), format, quality)
+      : null;
+    File cachedFile = fileKey != null ? cache.get(fileKey, format) : null;
+
+    if ( cachedFile == null ) {
+      FFmpegMediaMetadataRetriever metadataRetriever = new FFmpegMediaMetadataRetriever();
+      FFmpegMediaMetadataRetriever.IN_PREFERRED_CONFIG = Bitmap.Config.ARGB_8888;
+      metadataRetriever.setDataSource(source);
+
+      Bitmap bmp = metadataRetriever.getFrameAtTime((long) (sec * 1000000), VideoEdit.getFrameOption(accuracy));
+
+      // NOTE: FIX ROTATED BITMAP
+      int orientation = Integer.parseInt( metadataRetriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION) );
+      metadataRetriever.release();
+
+      if ( orientation != 0 ) {
+        Matrix matrix = new Matrix();
+        matrix.postRotate(orientation);
+        Bitmap rotated = Bitmap.createBitmap(bmp, 0, 0, bmp.getWidth(), bmp.getHeight(), matrix, true);
+        if ( rotated != bmp ) {
+          // NOTE: A FULL-SIZE FRAME, DON'T WAIT FOR THE GC TO FREE IT
+          bmp.recycle();
+        }
+        bmp = rotated;
+      }
 
-    // NOTE: FIX ROTATED BITMAP
-    int orientation = Integer.parseInt( metadataRetriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION) );
-    metadataRetriever.release();
+      if ( fileKey != null ) {
+        try {
+          cachedFile = cache.put(fileKey, bmp, format, ThumbnailWriter.isFileFormat(format) ? quality : 100);
+        } catch (IOException e) {
+          Log.d(LOG_TAG, "getPreviewImageAtPosition: failed to cache frame. " + e.toString());
+        }
+      }
 
-    if ( orientation != 0 ) {
-      Matrix matrix = new Matrix();
-      matrix.postRotate(orientation);
-      bmp = Bitmap.createBitmap(bmp, 0, 0, bmp.getWidth(), bmp.getHeight(), matrix, true);
+      if ( cachedFile == null ) {
+        resolvePreviewImage(bmp, null, format, quality, promise, ctx);
+        bmp.recycle();
+        return;
+      }
+      bmp.recycle();
     }
 
-    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    resolvePreviewImage(null, cachedFile, format, quality, promise, ctx);
+  }
 
+  /** Resolves with either {@code bmp} encoded as requested or the already encoded {@code file}. */
+  private static void resolvePreviewImage(@Nullable Bitmap bmp, @Nullable File file, String format, int quality, final Promise promise, Context ctx) {
     WritableMap event = Arguments.createMap();
 
-    if ( format == null || (format != null && format.equals("base64")) ) {
-      bmp.compress(Bitmap.CompressFormat.PNG, 100, byteArrayOutputStream);
-      byte[] byteArray = byteArrayOutputStream .toByteArray();
-      String encoded = Base64.encodeToString(byteArray, Base64.DEFAULT);
-
-      event.putString("image", encoded);
-    } else if ( format.equals("JPEG") ) {
-      bmp.compress(Bitmap.CompressFormat.JPEG, 100, byteArrayOutputStream);
-      byte[] byteArray = byteArrayOutputStream.toByteArray();
-
-      File tempFile = createTempFile("jpeg", promise, ctx);
-
-      try {
-        FileOutputStream fos = new FileOutputStream( tempFile.getPath() );
+    try {
+      if ( !ThumbnailWriter.isFileFormat(format) ) {
+        event.putString("image", file != null ? ThumbnailWriter.toBase64(file) : ThumbnailWriter.toBase64Png(bmp, 100));
+      } else {
+        WritableMap imageMap = Arguments.createMap();
+        // NOTE: THE CACHE FILE IS SHARED AND EVICTED ON ITS OWN, THE CALLER GETS A COPY
+        imageMap.putString("uri", file != null ? ThumbnailWriter.copyFile(ctx, file, format) : ThumbnailWriter.writeFile(ctx, bmp, format, quality));
 
-        fos.write( byteArray );
-        fos.close();
-      } catch (java.io.IOException e) {
-        promise.reject("Failed to save image", e.toString());
-        return;
+        event.putMap("image", imageMap);
       }
-
-      WritableMap imageMap = Arguments.createMap();
-      imageMap.putString("uri", "file://" + tempFile.getPath());
-
-      event.putMap("image", imageMap);
-    } else {
-      promise.reject("Wrong format error", "Wrong 'format'. Expected one of 'base64' or 'JPEG'.");
+    } catch (java.io.IOException e) {
+      promise.reject("Failed to save image", e.toString());
       return;
     }
 
@@ -605,11 +1828,12 @@ public class Trimmer {
     return new BufferedReader(new InputStreamReader(p.getInputStream()));
   }
 
-  private static BufferedReader getErrorFromProcess(Process p) {
-    return new BufferedReader(new InputStreamReader(p.getErrorStream()));
-  }
-
   static void crop(String source, ReadableMap options, final Promise promise, ReactApplicationContext ctx) {
+    String cacheKey = OutputCache.buildKey(ctx, "crop", source, options);
+    if (resolveFromOutputCache(cacheKey, options, promise, null, ctx)) {
+      return;
+    }
+
     int cropWidth = (int)( options.getDouble("cropWidth") );
     int cropHeight = (int)( options.getDouble("cropHeight") );
     int cropOffsetX = (int)( options.getDouble("cropOffsetX") );
@@ -629,10 +1853,6 @@ public class Trimmer {
     cropWidth = sizes.getInt("width");
     cropHeight = sizes.getInt("height");
 
-    // TODO: 1) ADD METHOD TO CHECK "IS FFMPEG LOADED".
-    // 2) CHECK IT HERE
-    // 3) EXPORT THAT METHOD TO "JS"
-
     final File tempFile = createTempFile("mp4", promise, ctx);
 
     ArrayList<String> cmd = new ArrayList<String>();
@@ -674,24 +1894,189 @@ public class Trimmer {
     // NOTE: OUTPUT FILE
     cmd.add(tempFile.getPath());
 
-    executeFfmpegCommand(cmd, tempFile.getPath(), ctx, promise, "Crop error", null);
+    long startMs = Math.max(0, parseTimeToMs(startTime));
+    long endMs = parseTimeToMs(endTime);
+    if (endMs < 0) {
+      endMs = getVideoDuration(source, ctx);
+    }
+    long durationMs = Math.max(0, endMs - startMs);
+
+    executeFfmpegCommand(new FfmpegCmdTaskParams(cmd, tempFile.getPath(), ctx, promise, "Crop error", null)
+      .setJobOptions(options, FfmpegJobScheduler.Priority.INTERACTIVE)
+      .setDurationMs(durationMs)
+      .setCacheKey(cacheKey));
   }
 
-  static private Void executeFfmpegCommand(@NonNull ArrayList<String> cmd, @NonNull final String pathToProcessingFile, @NonNull ReactApplicationContext ctx, @NonNull final Promise promise, @NonNull final String errorMessageTitle, @Nullable final OnCompressVideoListener cb) {
-    FfmpegCmdAsyncTaskParams ffmpegCmdAsyncTaskParams = new FfmpegCmdAsyncTaskParams(cmd, pathToProcessingFile, ctx, promise, errorMessageTitle, cb);
+  static private Void executeFfmpegCommand(@NonNull final FfmpegCmdTaskParams params) {
+    final String jobId = params.jobId;
+    final String errorMessageTitle = params.errorMessageTitle;
+    final OnCompressVideoListener cb = params.cb;
+    final Promise promise = params.promise;
+    FfmpegCmdTask ffmpegCmdTask = new FfmpegCmdTask(params);
+
+    // NOTE: CHECK AND CLAIM THE ID IN ONE STEP, TWO CALLS WITH THE SAME ID MAY RACE
+    if (runningJobs.putIfAbsent(jobId, ffmpegCmdTask) != null) {
+      String errorMessage = errorMessageTitle + ": job " + jobId + " is already running";
+      if (cb != null) {
+        cb.onError(errorMessage);
+      } else if (promise != null) {
+        promise.reject(errorMessageTitle, errorMessage);
+      }
+      return null;
+    }
 
-    FfmpegCmdAsyncTask ffmpegCmdAsyncTask = new FfmpegCmdAsyncTask();
-    ffmpegCmdAsyncTask.execute(ffmpegCmdAsyncTaskParams);
+    try {
+      FfmpegJobScheduler.getInstance().submit(ffmpegCmdTask, params.priority);
+    } catch (RejectedExecutionException e) {
+      runningJobs.remove(jobId);
+      Log.d(LOG_TAG, "ffmpeg job rejected: " + e.getMessage());
+      String errorMessage = errorMessageTitle + ": rejected. " + e.getMessage();
+      if (cb != null) {
+        cb.onError(errorMessage);
+      } else if (promise != null) {
+        promise.reject(ERROR_QUEUE_FULL, errorMessage);
+      }
+    }
 
     return null;
   }
 
-  private static String getFilesDirAbsolutePath(ReactApplicationContext ctx) {
+  /**
+   * Resolves with a previously produced output if there is one for {@code cacheKey}.
+   * Returns false on a cache miss.
+   */
+  private static boolean resolveFromOutputCache(@Nullable String cacheKey, @NonNull ReadableMap options, @Nullable final Promise promise, @Nullable final OnCompressVideoListener cb, @NonNull Context ctx) {
+    OutputCache.Entry entry = OutputCache.getInstance(ctx).get(cacheKey);
+    if (entry == null) {
+      return false;
+    }
+    Log.d(LOG_TAG, "output cache hit: " + entry.path);
+
+    String filePath = "file://" + entry.path;
+    if (cb != null) {
+      cb.onSuccess(filePath);
+    } else if (promise != null) {
+      WritableMap event = Arguments.createMap();
+      OutputCache.putExtras(entry, event);
+      event.putString("source", filePath);
+      event.putString("jobId", getJobId(options));
+      event.putDouble("size", entry.size);
+      event.putBoolean("cached", true);
+      promise.resolve(event);
+    }
+    return true;
+  }
+
+  static void cancel(String jobId, Promise promise) {
+    FfmpegCmdTask ffmpegCmdTask = runningJobs.get(jobId);
+    if (ffmpegCmdTask == null) {
+      promise.reject(ERROR_JOB_NOT_FOUND, "Cancel error: no running job with id " + jobId);
+      return;
+    }
+
+    ffmpegCmdTask.cancel();
+    if (FfmpegJobScheduler.getInstance().remove(ffmpegCmdTask)) {
+      // NOTE: JOB HAS NOT STARTED YET, SO NOBODY ELSE WILL REPORT IT
+      ffmpegCmdTask.finishCancelled();
+    }
+
+    WritableMap event = Arguments.createMap();
+    event.putString("jobId", jobId);
+    event.putBoolean("cancelled", true);
+    promise.resolve(event);
+  }
+
+  private static String getJobId(ReadableMap options) {
+    if (options.hasKey("jobId") && !options.isNull("jobId")) {
+      return options.getString("jobId");
+    }
+    return UUID.randomUUID().toString();
+  }
+
+  /** Per-job "threads" override, or 0 to let the scheduler decide. */
+  private static int getJobThreads(ReadableMap options) {
+    if (options.hasKey("threads") && !options.isNull("threads")) {
+      return Math.max(0, (int) options.getDouble("threads"));
+    }
+    return 0;
+  }
+
+  /**
+   * Limits {@code cmd} to {@code threads}: an output-side "-threads" only caps the encoder, so the
+   * decoder of each input gets its own. No "-filter_threads": it needs ffmpeg 3.4 or later, which
+   * the bundled binary isn't known to be.
+   */
+  private static void addThreadOptions(@NonNull ArrayList<String> cmd, @NonNull String threads) {
+    // NOTE: THE OUTPUT PATH IS ALWAYS THE LAST ELEMENT
+    cmd.add(cmd.size() - 1, "-threads");
+    cmd.add(cmd.size() - 1, threads);
+    for (int i = cmd.size() - 2; i >= 1; i--) {
+      if (cmd.get(i).equals("-i")) {
+        cmd.add(i, "-threads");
+        cmd.add(i + 1, threads);
+      }
+    }
+  }
+
+
+
+  private static FfmpegJobScheduler.Priority getJobPriority(ReadableMap options, FfmpegJobScheduler.Priority defaultPriority) {
+    String priority = options.hasKey("priority") ? options.getString("priority") : null;
+    return FfmpegJobScheduler.Priority.fromString(priority, defaultPriority);
+  }
+
+  private static void emitDeviceEvent(ReactContext ctx, String eventName, WritableMap event) {
+    if (!ctx.hasActiveCatalystInstance()) {
+      return;
+    }
+    ctx.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(eventName, event);
+  }
+
+  private static void sendProgressEvent(ReactContext ctx, String jobId, FfmpegProgressParser.Progress progress, long durationMs) {
+    double percent = 0;
+    if (progress.ended) {
+      percent = 100;
+    } else if (durationMs > 0) {
+      percent = Math.min(100, Math.max(0, progress.encodedTimeMs * 100.0 / durationMs));
+    }
+
+    WritableMap event = Arguments.createMap();
+    event.putString("jobId", jobId);
+    event.putDouble("percent", percent);
+    event.putDouble("time", progress.encodedTimeMs / 1000.0);
+    event.putDouble(Events.DURATION, durationMs / 1000.0);
+    event.putDouble("fps", progress.fps);
+    event.putDouble("speed", progress.speed);
+    event.putDouble("size", progress.totalSize);
+
+    emitDeviceEvent(ctx, Events.FFMPEG_PROGRESS, event);
+  }
+
+  /**
+   * Parses "HH:MM:SS.mmm" (as sent from JS), "MM:SS" or plain seconds into milliseconds.
+   * Returns -1 when the value can't be parsed.
+   */
+  static long parseTimeToMs(@Nullable String time) {
+    if (time == null || time.trim().isEmpty()) {
+      return -1;
+    }
+    try {
+      double seconds = 0;
+      for (String part : time.trim().split(":")) {
+        seconds = seconds * 60 + Double.parseDouble(part);
+      }
+      return Math.round(seconds * 1000);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static String getFilesDirAbsolutePath(Context ctx) {
     return ctx.getFilesDir().getAbsolutePath();
   }
 
-  private static String getFfmpegAbsolutePath(ReactApplicationContext ctx) {
-    return getFilesDirAbsolutePath(ctx) + File.separator + FFMPEG_FILE_NAME;
+  private static String getFfmpegAbsolutePath(Context ctx) {
+    return getFilesDirAbsolutePath(ctx) + File.separator + FfmpegInstaller.FFMPEG_FILE_NAME;
   }
 
   public static String getSha1FromFile(final File file) {
@@ -724,14 +2109,52 @@ public class Trimmer {
     }
   }
 
+  /** Starts installing the ffmpeg binary in the background. Does nothing if it is already installed. */
   public static void loadFfmpeg(ReactApplicationContext ctx) {
-    LoadFfmpegAsyncTaskParams loadFfmpegAsyncTaskParams = new LoadFfmpegAsyncTaskParams(ctx);
+    FfmpegInstaller.installAsync(ctx);
+  }
 
-    LoadFfmpegAsyncTask loadFfmpegAsyncTask = new LoadFfmpegAsyncTask();
-    loadFfmpegAsyncTask.execute(loadFfmpegAsyncTaskParams);
+  public static void isFfmpegReady(Promise promise) {
+    promise.resolve(FfmpegInstaller.isReady());
+  }
 
-    // TODO: EXPOSE TO JS "isFfmpegLoaded" AND "isFfmpegLoading"
+  /**
+   * Resolves with what is known about the installed binary: whether it is ready, the ABI it was
+   * picked for, the ABIs the device supports and the install stamp.
+   */
+  public static void getFfmpegDiagnostics(Promise promise, ReactApplicationContext ctx) {
+    WritableMap result = Arguments.createMap();
+    result.putBoolean("ready", FfmpegInstaller.isReady());
+    result.putString("path", getFfmpegAbsolutePath(ctx));
+    WritableArray supportedAbis = Arguments.createArray();
+    for (String abi : FfmpegInstaller.getSupportedAbis()) {
+      supportedAbis.pushString(abi);
+    }
+    result.putArray("supportedAbis", supportedAbis);
+
+    JSONObject stamp = FfmpegInstaller.readStamp(ctx);
+    if (stamp != null) {
+      result.putString("abi", stamp.optString("abi", FfmpegInstaller.DEFAULT_ABI));
+      result.putString("sha1", stamp.optString("sha1"));
+      result.putDouble("size", stamp.optLong("size"));
+      result.putInt("versionCode", stamp.optInt("versionCode"));
+    } else {
+      result.putNull("abi");
+    }
+    promise.resolve(result);
+  }
 
-    return;
+  /** Resolves once ffmpeg is installed, starting the install if it hasn't been started yet. */
+  public static void whenFfmpegReady(final Promise promise, ReactApplicationContext ctx) {
+    FfmpegInstaller.whenReady(ctx, new FfmpegInstaller.InstallCallback() {
+      @Override
+      public void onInstallFinished(boolean success) {
+        if (success) {
+          promise.resolve(true);
+        } else {
+          promise.reject("Ffmpeg install error", "Failed to install ffmpeg");
+        }
+      }
+    });
   }
 }
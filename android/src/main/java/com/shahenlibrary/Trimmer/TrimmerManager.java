@@ -30,6 +30,7 @@ import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.common.MapBuilder;
 
@@ -41,9 +42,20 @@ public class TrimmerManager extends ReactContextBaseJavaModule {
   private final ReactApplicationContext reactContext;
 
   public TrimmerManager(ReactApplicationContext reactContext) {
+    this(reactContext, true);
+  }
+
+  /**
+   * With {@code installFfmpegOnStartup} false the ffmpeg binary is installed on the first ffmpeg
+   * job, or when JS calls {@code loadFfmpeg}/{@code whenFfmpegReady}, instead of right away.
+   */
+  public TrimmerManager(ReactApplicationContext reactContext, boolean installFfmpegOnStartup) {
     super(reactContext);
     this.reactContext = reactContext;
-    loadFfmpeg();
+    ThumbnailWriter.pruneAsync(reactContext);
+    if (installFfmpegOnStartup) {
+      loadFfmpeg();
+    }
   }
 
   @Override
@@ -52,9 +64,27 @@ public class TrimmerManager extends ReactContextBaseJavaModule {
   }
 
   @ReactMethod
-  public void getPreviewImages(String path, Promise promise) {
+  public void getPreviewImages(String path, ReadableMap options, Promise promise) {
     Log.d(REACT_PACKAGE, "getPreviewImages: " + path);
-    Trimmer.getPreviewImages(path, promise, reactContext);
+    Trimmer.getPreviewImages(path, options, promise, reactContext);
+  }
+
+  @ReactMethod
+  public void getPreviewImagesStream(String path, ReadableMap options, Promise promise) {
+    Log.d(REACT_PACKAGE, "getPreviewImagesStream: " + path);
+    Trimmer.getPreviewImagesStream(path, options, promise, reactContext);
+  }
+
+  @ReactMethod
+  public void getPreviewStoryboard(String path, ReadableMap options, Promise promise) {
+    Log.d(REACT_PACKAGE, "getPreviewStoryboard: " + path);
+    Trimmer.getPreviewStoryboard(path, options, promise, reactContext);
+  }
+
+  @ReactMethod
+  public void cancelPreviewImages(String requestId, Promise promise) {
+    Log.d(REACT_PACKAGE, "cancelPreviewImages: " + requestId);
+    Trimmer.cancelPreviewImages(requestId, promise);
   }
 
   @ReactMethod
@@ -63,12 +93,24 @@ public class TrimmerManager extends ReactContextBaseJavaModule {
     Trimmer.getVideoInfo(path, promise, reactContext);
   }
 
+  @ReactMethod
+  public void probe(String path, Promise promise) {
+    Log.d(REACT_PACKAGE, "probe: " + path);
+    Trimmer.probe(path, promise, reactContext);
+  }
+
   @ReactMethod
   public void trim(ReadableMap options, Promise promise) {
     Log.d(REACT_PACKAGE, options.toString());
     Trimmer.trim(options, promise, reactContext);
   }
 
+  @ReactMethod
+  public void trimSegments(String path, ReadableArray segments, ReadableMap options, Promise promise) {
+    Log.d(REACT_PACKAGE, "trimSegments: " + path + " " + segments.toString());
+    Trimmer.trimSegments(path, segments, options, promise, reactContext);
+  }
+
   @ReactMethod
   public void compress(String path, ReadableMap options, Promise promise) {
     Log.d(REACT_PACKAGE, "compress video: " + options.toString());
@@ -80,7 +122,11 @@ public class TrimmerManager extends ReactContextBaseJavaModule {
     String source = options.getString("source");
     double sec = options.hasKey("second") ? options.getDouble("second") : 0;
     String format = options.hasKey("format") ? options.getString("format") : null;
-    Trimmer.getPreviewImageAtPosition(source, sec, format, promise, reactContext);
+    // NOTE: FULL QUALITY BY DEFAULT, AS BEFORE "quality" EXISTED
+    int quality = options.hasKey("quality") && !options.isNull("quality") ? Math.max(0, Math.min(100, options.getInt("quality"))) : 100;
+    String accuracy = options.hasKey("accuracy") && !options.isNull("accuracy") ? options.getString("accuracy") : null;
+    boolean cache = !options.hasKey("cache") || options.getBoolean("cache");
+    Trimmer.getPreviewImageAtPosition(source, sec, format, quality, accuracy, cache, promise, reactContext);
   }
 
   @ReactMethod
@@ -89,7 +135,34 @@ public class TrimmerManager extends ReactContextBaseJavaModule {
   }
 
   @ReactMethod
-  private void loadFfmpeg() {
+  public void process(String path, ReadableMap options, Promise promise) {
+    Log.d(REACT_PACKAGE, "process: " + options.toString());
+    Trimmer.process(path, options, promise, reactContext);
+  }
+
+  @ReactMethod
+  public void cancel(String jobId, Promise promise) {
+    Log.d(REACT_PACKAGE, "cancel: " + jobId);
+    Trimmer.cancel(jobId, promise);
+  }
+
+  @ReactMethod
+  public void loadFfmpeg() {
     Trimmer.loadFfmpeg(reactContext);
   }
+
+  @ReactMethod
+  public void isFfmpegReady(Promise promise) {
+    Trimmer.isFfmpegReady(promise);
+  }
+
+  @ReactMethod
+  public void whenFfmpegReady(Promise promise) {
+    Trimmer.whenFfmpegReady(promise, reactContext);
+  }
+
+  @ReactMethod
+  public void getFfmpegDiagnostics(Promise promise) {
+    Trimmer.getFfmpegDiagnostics(promise, reactContext);
+  }
 }
@@ -286,8 +286,9 @@ public class VideoPlayerView extends ScalableVideoView implements
     eventEmitter.receiveEvent(getId(), EventsEnum.EVENT_GET_INFO.toString(), event);
   }
 
-  public void getFrame(float sec) {
-    Bitmap bmp = metadataRetriever.getFrameAtTime((long) (sec * 1000000));
+  public void getFrame(float sec, @Nullable String accuracy) {
+    // NOTE: "keyframe" (DEFAULT) FOR SCRUBBING, "exact" ONCE THE USER STOPS DRAGGING
+    Bitmap bmp = metadataRetriever.getFrameAtTime((long) (sec * 1000000), VideoEdit.getFrameOption(accuracy));
 
     int width = Integer.parseInt(metadataRetriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
     int height = Integer.parseInt(metadataRetriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
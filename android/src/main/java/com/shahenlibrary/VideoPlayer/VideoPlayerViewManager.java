@@ -132,8 +132,9 @@ public class VideoPlayerViewManager extends SimpleViewManager<VideoPlayerView> {
         break;
       case COMMAND_GET_PREVIEW_IMAGE:
         float sec = (float) args.getDouble(0);
+        String accuracy = args.size() > 1 && !args.isNull(1) ? args.getString(1) : null;
         Log.d(VideoPlayerViewManager.REACT_PACKAGE, "receiveCommand: Get Preview image for sec: " + sec);
-        root.getFrame(sec);
+        root.getFrame(sec, accuracy);
         break;
       case COMMAND_COMPRESS_MEDIA:
         ReadableMap options = args.getMap(0);
@@ -0,0 +1,5 @@
+package com.shahenlibrary.interfaces;
+
+public interface OnFfmpegProgressListener {
+    void onProgress(final long encodedTimeMs, final boolean ended);
+}
@@ -0,0 +1,184 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Shahen Hovhannisyan.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.shahenlibrary.utils;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+
+import wseemann.media.FFmpegMediaMetadataRetriever;
+
+/**
+ * Container metadata read with a single {@link FFmpegMediaMetadataRetriever} open.
+ *
+ * Opening the container is the expensive part, and editor screens ask about the same file
+ * many times (info, preview images, compress, crop). Results are cached by path/URI plus
+ * size and mtime, so a file that changes on disk is probed again.
+ */
+public class MediaProbe {
+
+  private static final String TAG = "RNMediaProbe";
+  private static final int MAX_CACHED_PROBES = 32;
+
+  private static final LruCache<String, MediaProbe> cache = new LruCache<String, MediaProbe>(MAX_CACHED_PROBES);
+
+  public final String source;
+  public final long durationMs;
+  public final int width;
+  public final int height;
+  public final int rotation;
+  @Nullable public final String videoCodec;
+  @Nullable public final String audioCodec;
+  public final boolean hasAudio;
+  public final double fps;
+  public final long fileSize;
+  // NOTE: OVERALL BITRATE IN BITS PER SECOND. THE RETRIEVER DOESN'T EXPOSE STREAM BITRATES,
+  // SO IT IS DERIVED FROM THE FILE SIZE AND DURATION. 0 IF UNKNOWN
+  public final long bitrate;
+
+  private Double keyframeIntervalMs = null;
+
+  private MediaProbe(String source, FFmpegMediaMetadataRetriever retriever) {
+    this.source = source;
+    this.durationMs = parseLong(retriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_DURATION));
+    this.width = (int) parseLong(retriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+    this.height = (int) parseLong(retriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+    this.rotation = (int) parseLong(retriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION));
+    this.videoCodec = retriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_VIDEO_CODEC);
+    this.audioCodec = retriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_AUDIO_CODEC);
+    this.hasAudio = audioCodec != null && !audioCodec.isEmpty();
+    this.fps = parseDouble(retriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_FRAMERATE));
+    this.fileSize = parseLong(retriever.extractMetadata(FFmpegMediaMetadataRetriever.METADATA_KEY_FILESIZE));
+    this.bitrate = durationMs > 0 && fileSize > 0 ? fileSize * 8 * 1000 / durationMs : 0;
+  }
+
+  /**
+   * Returns cached metadata for {@code source}, opening it only on a miss.
+   * Throws {@link IllegalArgumentException} like the retriever does when the source can't be opened.
+   */
+  @NonNull
+  public static MediaProbe probe(@NonNull Context ctx, @NonNull String source) throws IllegalArgumentException {
+    String key = getCacheKey(ctx, source);
+    MediaProbe probe = cache.get(key);
+    if (probe != null) {
+      return probe;
+    }
+
+    FFmpegMediaMetadataRetriever retriever = new FFmpegMediaMetadataRetriever();
+    try {
+      if (VideoEdit.shouldUseURI(source)) {
+        retriever.setDataSource(ctx, Uri.parse(source));
+      } else {
+        retriever.setDataSource(source);
+      }
+      probe = new MediaProbe(source, retriever);
+    } finally {
+      retriever.release();
+    }
+
+    cache.put(key, probe);
+    return probe;
+  }
+
+  /**
+   * Average distance between sync samples, read from the MP4 sample tables.
+   * Only local MP4 files have them. Returns -1 otherwise. Computed once per probe.
+   */
+  public synchronized double getKeyframeIntervalMs() {
+    if (keyframeIntervalMs == null) {
+      double interval = -1;
+      File file = VideoEdit.getLocalFile(source);
+      if (file != null && file.isFile()) {
+        try {
+          interval = VideoEdit.getAverageSyncSampleIntervalMs(file);
+        } catch (Exception e) {
+          Log.d(TAG, "getKeyframeIntervalMs: " + e.toString());
+        }
+      }
+      keyframeIntervalMs = interval;
+    }
+    return keyframeIntervalMs;
+  }
+
+  /** Width and height as displayed, i.e. swapped for portrait (90/270) rotations. */
+  public int getDisplayWidth() {
+    return rotation == 90 || rotation == 270 ? height : width;
+  }
+
+  public int getDisplayHeight() {
+    return rotation == 90 || rotation == 270 ? width : height;
+  }
+
+  private static String getCacheKey(Context ctx, String source) {
+    File file = VideoEdit.getLocalFile(source);
+    if (file != null) {
+      return source + "|" + file.length() + "|" + file.lastModified();
+    }
+    if (source.toLowerCase().startsWith("content://")) {
+      // NOTE: NO MTIME FOR CONTENT URIS. SIZE IS THE BEST WE CAN CHEAPLY GET
+      try {
+        ParcelFileDescriptor pfd = ctx.getContentResolver().openFileDescriptor(Uri.parse(source), "r");
+        if (pfd != null) {
+          try {
+            return source + "|" + pfd.getStatSize();
+          } finally {
+            pfd.close();
+          }
+        }
+      } catch (Exception e) {
+        Log.d(TAG, "getCacheKey: " + e.toString());
+      }
+    }
+    return source;
+  }
+
+  private static long parseLong(@Nullable String value) {
+    if (value == null) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static double parseDouble(@Nullable String value) {
+    if (value == null) {
+      return 0;
+    }
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Shahen Hovhannisyan.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.shahenlibrary.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+import com.googlecode.mp4parser.FileDataSourceImpl;
+import com.googlecode.mp4parser.authoring.Movie;
+import com.googlecode.mp4parser.authoring.Track;
+import com.googlecode.mp4parser.authoring.container.mp4.MovieCreator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decode times of every sample of a track, plus the times of its sync samples.
+ *
+ * Times are kept as a prefix sum of the sample durations in track ticks, so finding the sample
+ * or sync sample at a given time is a binary search instead of a walk over the whole track.
+ * Indices of all tracks of a file are cached by path, size and mtime, so planning another trim
+ * of the same file doesn't even parse it again.
+ */
+public class SampleTimeIndex {
+
+  // NOTE: AN HOUR OF 60 FPS VIDEO PLUS ITS AUDIO IS ROUGHLY 3MB OF INDEX
+  private static final int MAX_CACHED_BYTES = 8 * 1024 * 1024;
+
+  private static final LruCache<String, List<SampleTimeIndex>> cache = new LruCache<String, List<SampleTimeIndex>>(MAX_CACHED_BYTES) {
+    @Override
+    protected int sizeOf(String key, List<SampleTimeIndex> value) {
+      int size = 0;
+      for (SampleTimeIndex index : value) {
+        size += (index.decodeTimes.length + index.syncSampleTimes.length) * 8;
+      }
+      return Math.max(1, size);
+    }
+  };
+
+  private final long timescale;
+  // NOTE: decodeTimes[i] IS THE START OF SAMPLE i, decodeTimes[sampleCount] THE END OF THE TRACK
+  private final long[] decodeTimes;
+  // NOTE: EMPTY WHEN THE TRACK HAS NO SYNC-SAMPLE TABLE (EVERY SAMPLE IS A SYNC SAMPLE)
+  private final long[] syncSampleTimes;
+
+  private SampleTimeIndex(@NonNull Track track) {
+    timescale = track.getTrackMetaData().getTimescale();
+
+    long[] durations = track.getSampleDurations();
+    decodeTimes = new long[durations.length + 1];
+    for (int i = 0; i < durations.length; i++) {
+      decodeTimes[i + 1] = decodeTimes[i] + durations[i];
+    }
+
+    long[] syncSamples = track.getSyncSamples();
+    int syncCount = 0;
+    long[] times = new long[syncSamples != null ? syncSamples.length : 0];
+    for (int i = 0; i < times.length; i++) {
+      // NOTE: SAMPLE NUMBERS ARE 1-BASED. SKIP ENTRIES POINTING PAST THE LAST SAMPLE
+      long sample = syncSamples[i] - 1;
+      if (sample >= 0 && sample < durations.length) {
+        times[syncCount++] = decodeTimes[(int) sample];
+      }
+    }
+    syncSampleTimes = syncCount == times.length ? times : Arrays.copyOf(times, syncCount);
+  }
+
+  /** Indices of all tracks of {@code src}, in track order. Parses the file only on a cache miss. */
+  @NonNull
+  public static List<SampleTimeIndex> get(@NonNull File src) throws IOException {
+    List<SampleTimeIndex> indices = cache.get(getCacheKey(src));
+    if (indices != null) {
+      return indices;
+    }
+    FileDataSourceImpl dataSource = new FileDataSourceImpl(src);
+    try {
+      return get(src, MovieCreator.build(dataSource));
+    } finally {
+      dataSource.close();
+    }
+  }
+
+  /** Same as {@link #get(File)} for a {@code movie} that was already built from {@code src}. */
+  @NonNull
+  public static List<SampleTimeIndex> get(@NonNull File src, @NonNull Movie movie) {
+    String key = getCacheKey(src);
+    List<SampleTimeIndex> indices = cache.get(key);
+    if (indices != null && indices.size() == movie.getTracks().size()) {
+      return indices;
+    }
+    List<SampleTimeIndex> built = new ArrayList<SampleTimeIndex>();
+    for (Track track : movie.getTracks()) {
+      built.add(new SampleTimeIndex(track));
+    }
+    indices = Collections.unmodifiableList(built);
+    cache.put(key, indices);
+    return indices;
+  }
+
+  /** First index with sync samples, the same track the trims correct their cut points on. */
+  @Nullable
+  public static SampleTimeIndex getFirstWithSyncSamples(@NonNull List<SampleTimeIndex> indices) {
+    for (SampleTimeIndex index : indices) {
+      if (index.hasSyncSamples()) {
+        return index;
+      }
+    }
+    return null;
+  }
+
+  public int getSampleCount() {
+    return decodeTimes.length - 1;
+  }
+
+  public boolean hasSyncSamples() {
+    return syncSampleTimes.length > 0;
+  }
+
+  public int getSyncSampleCount() {
+    return syncSampleTimes.length;
+  }
+
+  public double getSyncSampleTimeSec(int syncSample) {
+    return toSec(syncSampleTimes[syncSample]);
+  }
+
+  /**
+   * Last sample that starts at or before {@code sec}, or -1 if {@code sec} is before the first
+   * sample. Of several samples starting at the same time, the first one is returned.
+   */
+  public int getSampleAt(double sec) {
+    int count = getSampleCount();
+    int low = 0;
+    int high = count - 1;
+    int found = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (toSec(decodeTimes[mid]) <= sec) {
+        found = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    while (found > 0 && decodeTimes[found - 1] == decodeTimes[found]) {
+      found--;
+    }
+    return found;
+  }
+
+  /** Moves {@code sec} back to the last sync sample at or before it, 0 if there is none. */
+  public double snapToSyncSample(double sec) {
+    if (!hasSyncSamples()) {
+      return sec;
+    }
+    // NOTE: FIRST SYNC SAMPLE STRICTLY AFTER "sec"
+    int low = 0;
+    int high = syncSampleTimes.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (toSec(syncSampleTimes[mid]) > sec) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low > 0 ? toSec(syncSampleTimes[low - 1]) : 0;
+  }
+
+  private double toSec(long ticks) {
+    return (double) ticks / (double) timescale;
+  }
+
+  private static String getCacheKey(File src) {
+    return src.getAbsolutePath() + "|" + src.length() + "|" + src.lastModified();
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017 Shahen Hovhannisyan.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.shahenlibrary.utils;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Formatter;
+
+/**
+ * Cheap identity of a media source: size, mtime and a hash of a few sampled chunks.
+ *
+ * Hashing a whole video would cost as much as the work we try to avoid, so only the head,
+ * the middle and the tail are read. Remote ("http(s)://") sources have no fingerprint.
+ */
+public class SourceFingerprint {
+
+  private static final String TAG = "RNSourceFingerprint";
+  private static final int SAMPLE_SIZE = 64 * 1024;
+
+  public final long size;
+  public final long lastModified;
+  public final String sampleHash;
+
+  private SourceFingerprint(long size, long lastModified, String sampleHash) {
+    this.size = size;
+    this.lastModified = lastModified;
+    this.sampleHash = sampleHash;
+  }
+
+  @Override
+  public String toString() {
+    return size + ":" + lastModified + ":" + sampleHash;
+  }
+
+  @Nullable
+  public static SourceFingerprint compute(@NonNull Context ctx, @Nullable String source) {
+    if (source == null) {
+      return null;
+    }
+    File file = VideoEdit.getLocalFile(source);
+    try {
+      if (file != null) {
+        if (!file.isFile()) {
+          return null;
+        }
+        FileInputStream stream = new FileInputStream(file);
+        try {
+          return fromChannel(stream.getChannel(), file.lastModified());
+        } finally {
+          stream.close();
+        }
+      }
+      if (source.toLowerCase().startsWith("content://")) {
+        // NOTE: CONTENT PROVIDERS DON'T EXPOSE MTIME. SIZE AND SAMPLED CONTENT HAVE TO DO
+        ParcelFileDescriptor pfd = ctx.getContentResolver().openFileDescriptor(Uri.parse(source), "r");
+        if (pfd == null) {
+          return null;
+        }
+        FileInputStream stream = new ParcelFileDescriptor.AutoCloseInputStream(pfd);
+        try {
+          return fromChannel(stream.getChannel(), 0);
+        } finally {
+          stream.close();
+        }
+      }
+    } catch (Exception e) {
+      Log.d(TAG, "compute: failed for " + source + ". " + e.toString());
+    }
+    return null;
+  }
+
+  private static SourceFingerprint fromChannel(FileChannel channel, long lastModified) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e.toString());
+    }
+
+    long size = channel.size();
+    long[] offsets = { 0, Math.max(0, size / 2 - SAMPLE_SIZE / 2), Math.max(0, size - SAMPLE_SIZE) };
+    ByteBuffer buffer = ByteBuffer.allocate(SAMPLE_SIZE);
+    for (long offset : offsets) {
+      buffer.clear();
+      long position = offset;
+      int n;
+      while (buffer.hasRemaining() && (n = channel.read(buffer, position)) > 0) {
+        position += n;
+      }
+      digest.update(buffer.array(), 0, buffer.position());
+    }
+
+    return new SourceFingerprint(size, lastModified, toHex(digest.digest()));
+  }
+
+  public static String toHex(byte[] bytes) {
+    Formatter f = new Formatter();
+    try {
+      for (final byte b : bytes) {
+        f.format("%02x", b);
+      }
+      return f.toString();
+    } finally {
+      f.close();
+    }
+  }
+}
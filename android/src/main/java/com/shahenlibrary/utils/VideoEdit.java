@@ -31,7 +31,7 @@ import android.util.Log;
 import com.coremedia.iso.boxes.Container;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.uimanager.ThemedReactContext;
-import com.googlecode.mp4parser.FileDataSourceViaHeapImpl;
+import com.googlecode.mp4parser.FileDataSourceImpl;
 import com.googlecode.mp4parser.authoring.Movie;
 import com.googlecode.mp4parser.authoring.Track;
 import com.googlecode.mp4parser.authoring.builder.DefaultMp4Builder;
@@ -44,13 +44,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
 import java.util.Date;
 import java.util.Formatter;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 
+import wseemann.media.FFmpegMediaMetadataRetriever;
+
 import com.shahenlibrary.Trimmer.Trimmer;
 import com.shahenlibrary.interfaces.OnCompressVideoListener;
 import com.shahenlibrary.interfaces.OnTrimVideoListener;
@@ -60,6 +61,9 @@ public class VideoEdit {
 
   private static final String TAG = "RNVideoEdit";
 
+  public static final String FRAME_ACCURACY_KEYFRAME = "keyframe";
+  public static final String FRAME_ACCURACY_EXACT = "exact";
+
   public static boolean shouldUseURI(@Nullable String path) {
     String[] supportedProtocols = {
             "content://",
@@ -80,6 +84,69 @@ public class VideoEdit {
     return lookupWithURI;
   }
 
+  public static boolean isSupportedFrameAccuracy(@Nullable String accuracy) {
+    return accuracy == null || accuracy.equals(FRAME_ACCURACY_KEYFRAME) || accuracy.equals(FRAME_ACCURACY_EXACT);
+  }
+
+  /**
+   * Retriever option for an "accuracy" value. "keyframe" (the default) returns the closest
+   * sync frame, which only decodes one frame and is what scrubbing wants. "exact" decodes up
+   * to the requested frame.
+   */
+  public static int getFrameOption(@Nullable String accuracy) {
+    return FRAME_ACCURACY_EXACT.equals(accuracy)
+      ? FFmpegMediaMetadataRetriever.OPTION_CLOSEST
+      : FFmpegMediaMetadataRetriever.OPTION_CLOSEST_SYNC;
+  }
+
+  /**
+   * Returns the file behind a plain path or a "file://" URI, or null for other sources
+   * ("content://", "http(s)://") that can't be opened directly.
+   */
+  @Nullable
+  public static File getLocalFile(@Nullable String path) {
+    if (path == null) {
+      return null;
+    }
+    if (path.toLowerCase().startsWith("file://")) {
+      return new File(Uri.parse(path).getPath());
+    }
+    if (shouldUseURI(path)) {
+      return null;
+    }
+    return new File(path);
+  }
+
+  /**
+   * Moves {@code startSec} back to the nearest sync sample of the first track that has one, the
+   * same way {@link #startTrim} corrects its start. The end is kept as requested: a cut can end
+   * on any frame, so snapping it would only make the clip longer than asked for.
+   * Returns {@code {start, end}} in seconds, or null if the file has no sync-sample table.
+   */
+  @Nullable
+  public static double[] snapToSyncSamples(@NonNull File src, double startSec, double endSec) throws IOException {
+    SampleTimeIndex index = SampleTimeIndex.getFirstWithSyncSamples(SampleTimeIndex.get(src));
+    if (index == null) {
+      return null;
+    }
+    return new double[] { index.snapToSyncSample(startSec), endSec };
+  }
+
+  /**
+   * Average time between sync samples of the first track that has them, in milliseconds.
+   * Returns -1 if the file has no sync-sample table (every frame is a keyframe or it isn't an MP4).
+   */
+  public static double getAverageSyncSampleIntervalMs(@NonNull File src) throws IOException {
+    for (SampleTimeIndex index : SampleTimeIndex.get(src)) {
+      int syncSamples = index.getSyncSampleCount();
+      if (syncSamples > 1) {
+        double sec = index.getSyncSampleTimeSec(syncSamples - 1) - index.getSyncSampleTimeSec(0);
+        return sec * 1000 / (syncSamples - 1);
+      }
+    }
+    return -1;
+  }
+
   public static void startTrim(@NonNull File src, @NonNull String dst, long startMs, long endMs, @NonNull OnTrimVideoListener callback) throws IOException {
     final String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
     final String fileName = "MP4_" + timeStamp + ".mp4";
@@ -103,52 +170,45 @@ public class VideoEdit {
       callback.onError(error);
       return;
     }
-    Movie movie = MovieCreator.build(new FileDataSourceViaHeapImpl(src.getAbsolutePath()));
+    // NOTE: MEMORY-MAPPED, SO SAMPLES ARE PAGED IN AS THEY ARE WRITTEN INSTEAD OF COPIED ONTO THE HEAP
+    FileDataSourceImpl dataSource = new FileDataSourceImpl(src);
+    try {
+      genVideoUsingMp4Parser(src, dataSource, dst, startMs, endMs, callback);
+    } finally {
+      dataSource.close();
+    }
+  }
+
+  private static void genVideoUsingMp4Parser(@NonNull File src, @NonNull FileDataSourceImpl dataSource, @NonNull File dst, long startMs, long endMs, @NonNull OnTrimVideoListener callback) throws IOException {
+    Movie movie = MovieCreator.build(dataSource);
 
     Log.d(TAG, "genVideoUsingMp4Parser: Movie " + movie.toString());
     List<Track> tracks = movie.getTracks();
+    List<SampleTimeIndex> indices = SampleTimeIndex.get(src, movie);
     movie.setTracks(new LinkedList<Track>());
 
-    double startTime1 = startMs / 1000;
-    double endTime1 = endMs / 1000;
+    double startTime1 = startMs / 1000.0;
+    double endTime1 = endMs / 1000.0;
 
     boolean timeCorrected = false;
 
-    for (Track track : tracks) {
-      if (track.getSyncSamples() != null && track.getSyncSamples().length > 0) {
+    for (SampleTimeIndex index : indices) {
+      if (index.hasSyncSamples()) {
         if (timeCorrected) {
           throw new RuntimeException("The startTime has already been corrected by another track with SyncSample. Not Supported.");
         }
-        startTime1 = correctTimeToSyncSample(track, startTime1, false);
-        endTime1 = correctTimeToSyncSample(track, endTime1, true);
+        // NOTE: ONLY THE START HAS TO BE ON A SYNC SAMPLE. THE END STAYS WHERE IT WAS REQUESTED
+        startTime1 = index.snapToSyncSample(startTime1);
         timeCorrected = true;
       }
     }
 
-    for (Track track : tracks) {
-      long currentSample = 0;
-      double currentTime = 0;
-      double lastTime = -1;
-      long startSample1 = -1;
-      long endSample1 = -1;
-
-      for (int i = 0; i < track.getSampleDurations().length; i++) {
-        long delta = track.getSampleDurations()[i];
-
-
-        if (currentTime > lastTime && currentTime <= startTime1) {
-          // current sample is still before the new starttime
-          startSample1 = currentSample;
-        }
-        if (currentTime > lastTime && currentTime <= endTime1) {
-          // current sample is after the new start time and still before the new endtime
-          endSample1 = currentSample;
-        }
-        lastTime = currentTime;
-        currentTime += (double) delta / (double) track.getTrackMetaData().getTimescale();
-        currentSample++;
-      }
-      movie.addTrack(new AppendTrack(new CroppedTrack(track, startSample1, endSample1)));
+    for (int i = 0; i < tracks.size(); i++) {
+      SampleTimeIndex index = indices.get(i);
+      // NOTE: LAST SAMPLES STARTING AT OR BEFORE THE (CORRECTED) CUT POINTS
+      long startSample1 = index.getSampleAt(startTime1);
+      long endSample1 = index.getSampleAt(endTime1);
+      movie.addTrack(new AppendTrack(new CroppedTrack(tracks.get(i), startSample1, endSample1)));
     }
 
     Log.d(TAG, "genVideoUsingMp4Parser: get parent file");
@@ -164,46 +224,21 @@ public class VideoEdit {
     Container out = new DefaultMp4Builder().build(movie);
 
     FileOutputStream fos = new FileOutputStream(dst);
-    FileChannel fc = fos.getChannel();
-    out.writeContainer(fc);
-
-    Log.d(TAG, "genVideoUsingMp4Parser: write and ready");
-    fc.close();
-    fos.close();
+    try {
+      // NOTE: BOXES ARE STREAMED STRAIGHT INTO THE FILE, THE OUTPUT IS NEVER BUILT UP IN MEMORY
+      FileChannel fc = fos.getChannel();
+      out.writeContainer(fc);
+      Log.d(TAG, "genVideoUsingMp4Parser: write and ready");
+      fc.close();
+    } finally {
+      fos.close();
+    }
 
     Log.d(TAG, "genVideoUsingMp4Parser: closed streams");
     if (callback != null)
       callback.getResult(Uri.parse(dst.toString()));
   }
 
-  private static double correctTimeToSyncSample(@NonNull Track track, double cutHere, boolean next) {
-    double[] timeOfSyncSamples = new double[track.getSyncSamples().length];
-    long currentSample = 0;
-    double currentTime = 0;
-    for (int i = 0; i < track.getSampleDurations().length; i++) {
-      long delta = track.getSampleDurations()[i];
-
-      if (Arrays.binarySearch(track.getSyncSamples(), currentSample + 1) >= 0) {
-        timeOfSyncSamples[Arrays.binarySearch(track.getSyncSamples(), currentSample + 1)] = currentTime;
-      }
-      currentTime += (double) delta / (double) track.getTrackMetaData().getTimescale();
-      currentSample++;
-
-    }
-    double previous = 0;
-    for (double timeOfSyncSample : timeOfSyncSamples) {
-      if (timeOfSyncSample > cutHere) {
-        if (next) {
-          return timeOfSyncSample;
-        } else {
-          return previous;
-        }
-      }
-      previous = timeOfSyncSample;
-    }
-    return timeOfSyncSamples[timeOfSyncSamples.length - 1];
-  }
-
   public static String stringForTime(int timeMs) {
     int totalSeconds = timeMs / 1000;
 
@@ -1,19 +1,44 @@
 // @flow
 
-import { NativeModules } from 'react-native';
+import { NativeModules, DeviceEventEmitter } from 'react-native';
 import type {
   sourceType,
   trimOptions,
+  trimResult,
   previewMaxSize,
   format,
-  cropOptions
+  frameAccuracy,
+  cropOptions,
+  compressOptions,
+  compressResult,
+  progressEvent,
+  trimSegment,
+  trimSegmentsOptions,
+  segmentEvent,
+  processOptions,
+  probeResult,
+  previewImagesOptions,
+  storyboardOptions,
+  storyboard,
+  previewImagesStreamOptions,
+  previewImageEvent,
+  previewImagesCompleteEvent,
+  ffmpegDiagnostics
 } from './types';
 
 import { getActualSource, numberToHHMMSS } from '../utils';
 
 const { RNTrimmerManager: TrimmerManager } = NativeModules;
+let nextPreviewRequest = 0;
+
 export class ProcessingManager {
   static trim(source: sourceType, options: trimOptions): Promise<string> {
+    return ProcessingManager.trimWithDetails(source, options)
+      .then((res) => res.source);
+  }
+
+  // NOTE: SAME AS "trim", BUT RESOLVES WITH THE RANGE THAT WAS ACTUALLY CUT (ANDROID ONLY)
+  static trimWithDetails(source: sourceType, options: trimOptions): Promise<trimResult> {
     if ( options.startTime != null ) {
       options.startTime = numberToHHMMSS({ number: options.startTime })
     }
@@ -23,28 +48,81 @@ export class ProcessingManager {
 
     const actualSource: string = getActualSource(source);
     const mData = { source: actualSource, ...options };
-    return TrimmerManager.trim(mData)
-      .then((res) => res.source);
+    return TrimmerManager.trim(mData);
+  }
+
+  static trimSegments(
+    source: sourceType,
+    segments: Array<trimSegment>,
+    options: trimSegmentsOptions = {}
+  ): Promise<Array<string>> {
+    const actualSource: string = getActualSource(source);
+    return TrimmerManager.trimSegments(actualSource, segments, options)
+      .then((res) => res.sources);
   }
 
   static getPreviewForSecond(
     source: sourceType,
     second: number,
     maximumSize: previewMaxSize,
-    format: format
+    format: format,
+    quality?: number,
+    accuracy?: frameAccuracy
   ): Promise<*> {
     const actualSource: string = getActualSource(source);
-    const mData = { source: actualSource, second, format };
+    const mData = { source: actualSource, second, format, quality, accuracy };
     return TrimmerManager.getPreviewImageAtPosition(mData)
       .then((res) => res.image);
   }
 
+  static getPreviewImages(source: sourceType, options: previewImagesOptions = {}): Promise<Array<string>> {
+    const actualSource: string = getActualSource(source);
+    return TrimmerManager.getPreviewImages(actualSource, options)
+      .then((res) => res.images);
+  }
+
+  static getPreviewImagesStream(
+    source: sourceType,
+    onImage: (event: previewImageEvent) => void,
+    options: previewImagesStreamOptions = {}
+  ): Promise<previewImagesCompleteEvent> {
+    const actualSource: string = getActualSource(source);
+    const requestId = options.requestId || `preview-${Date.now()}-${nextPreviewRequest++}`;
+    const subscription = DeviceEventEmitter.addListener('previewImage', (event) => {
+      if (event.requestId === requestId) {
+        onImage(event);
+      }
+    });
+    return TrimmerManager.getPreviewImagesStream(actualSource, { ...options, requestId })
+      .then((res) => {
+        subscription.remove();
+        return res;
+      }, (err) => {
+        subscription.remove();
+        throw err;
+      });
+  }
+
+  static getPreviewStoryboard(source: sourceType, options: storyboardOptions = {}): Promise<storyboard> {
+    const actualSource: string = getActualSource(source);
+    return TrimmerManager.getPreviewStoryboard(actualSource, options);
+  }
+
+  static cancelPreviewImages(requestId: string): Promise<*> {
+    return TrimmerManager.cancelPreviewImages(requestId);
+  }
+
   static getVideoInfo(source: sourceType): Promise<*> {
     const actualSource: string = getActualSource(source);
     return TrimmerManager.getVideoInfo(actualSource);
   }
 
-  static compress(source: sourceType, options: any): Promise<*> {
+  static probe(source: sourceType): Promise<probeResult> {
+    const actualSource: string = getActualSource(source);
+    return TrimmerManager.probe(actualSource);
+  }
+
+  static compress(source: sourceType, options: compressOptions): Promise<compressResult> {
     const actualSource: string = getActualSource(source);
     return TrimmerManager.compress(actualSource, options);
   }
@@ -62,4 +140,42 @@ export class ProcessingManager {
       .then((res) => res.source);
   }
 
+  static process(source: sourceType, options: processOptions): Promise<string> {
+    const actualSource: string = getActualSource(source);
+    return TrimmerManager.process(actualSource, options)
+      .then((res) => res.source);
+  }
+
+  static cancel(jobId: string): Promise<*> {
+    return TrimmerManager.cancel(jobId);
+  }
+
+  static warmUpFfmpeg(): void {
+    TrimmerManager.loadFfmpeg();
+  }
+
+  static isFfmpegReady(): Promise<boolean> {
+    return TrimmerManager.isFfmpegReady();
+  }
+
+  static whenFfmpegReady(): Promise<boolean> {
+    return TrimmerManager.whenFfmpegReady();
+  }
+
+  static getFfmpegDiagnostics(): Promise<ffmpegDiagnostics> {
+    return TrimmerManager.getFfmpegDiagnostics();
+  }
+
+  static addProgressListener(listener: (event: progressEvent) => void) {
+    return DeviceEventEmitter.addListener('ffmpegProgress', listener);
+  }
+
+  static addSegmentListener(listener: (event: segmentEvent) => void) {
+    return DeviceEventEmitter.addListener('ffmpegSegmentComplete', listener);
+  }
+
+  static addPreviewImagesCompleteListener(listener: (event: previewImagesCompleteEvent) => void) {
+    return DeviceEventEmitter.addListener('previewImagesComplete', listener);
+  }
+
 }
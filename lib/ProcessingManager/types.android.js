@@ -3,18 +3,56 @@
 export type sourceType = string
   | { uri: string };
 
+export type jobPriority = 'interactive' | 'background';
+
 export type trimOptions = {
+  startTime: number,
+  endTime: number,
+  // NOTE: "fast" CUTS ON KEYFRAMES WITHOUT RE-ENCODING (LOCAL FILES ONLY). DEFAULT IS "accurate"
+  mode?: 'fast' | 'accurate',
+  priority?: jobPriority,
+  // NOTE: ENCODER THREADS. BY DEFAULT THE CORES ARE SPLIT BETWEEN THE RUNNING JOBS
+  threads?: number,
+  // NOTE: REUSE A PREVIOUS OUTPUT FOR THE SAME SOURCE AND OPTIONS, AS LONG AS THAT FILE IS STILL
+  // UNCHANGED. DEFAULT IS false. CACHED OUTPUTS ARE NEVER DELETED FOR YOU, THEY STAY YOURS
+  cache?: boolean,
+  // NOTE: PASS YOUR OWN ID TO BE ABLE TO CANCEL THE JOB WITH "ProcessingManager.cancel"
+  jobId?: string
+};
+
+// NOTE: "startTime"/"endTime" ARE IN SECONDS AND REFLECT THE RANGE THAT WAS ACTUALLY CUT,
+// I.E. THE START SNAPPED TO A KEYFRAME IN "fast" MODE
+export type trimResult = {
+  source: string,
+  startTime: number,
+  endTime: number,
+  mode: 'fast' | 'accurate',
+  jobId?: string,
+  size?: number,
+  cached?: boolean
+};
+
+// NOTE: TIMES ARE IN SECONDS. SEGMENTS MUST NOT OVERLAP
+export type trimSegment = {
   startTime: number,
   endTime: number
 };
 
+export type trimSegmentsOptions = {
+  priority?: jobPriority,
+  threads?: number,
+  jobId?: string
+};
+
 // TODO
 export type previewMaxSize = {
   width: number,
   height: number
 };
 
-export type format = 'base64' | 'JPEG';
+export type format = 'base64' | 'JPEG' | 'WEBP';
+
+export type frameAccuracy = 'keyframe' | 'exact';
 
 export type cropOptions = {
   cropOffsetX: number,
@@ -25,15 +63,186 @@ export type cropOptions = {
   startTime: ?number,
   endTime: ?number,
 
+  priority?: jobPriority,
+  threads?: number,
+  cache?: boolean,
+  jobId?: string,
+
   // TODO: COMPRESS IN CROP
   // quality: ?trimQuality
 };
 
+export type compressOptions = {
+  width?: number,
+  height?: number,
+  // NOTE: EITHER OF THESE SWITCHES FROM CRF TO A TARGET BITRATE (SOURCE BITRATE / MULTIPLIER, AT LEAST minimumBitrate)
+  bitrateMultiplier?: number,
+  minimumBitrate?: number,
+  // NOTE: ONE-PASS ENCODE SIZED TO LAND AT (JUST UNDER) THIS MANY BYTES. AUDIO IS RE-ENCODED AT 128 KBIT/S
+  targetSizeBytes?: number,
+  removeAudio?: boolean,
+  // NOTE: WITH A BITRATE OR SIZE TARGET, RETURN (OR JUST REMUX) AN H.264 SOURCE THAT ALREADY
+  // MEETS IT AND THE REQUESTED SIZE. DEFAULT IS true
+  passthrough?: boolean,
+
+  priority?: jobPriority,
+  threads?: number,
+  cache?: boolean,
+  jobId?: string
+};
+
+// NOTE: "skipped" IS true WHEN THE SOURCE WAS RETURNED AS IS, BECAUSE ENCODING COULDN'T MAKE IT SMALLER
+export type compressResult = {
+  source: string,
+  jobId?: string,
+  // NOTE: SIZE OF THE OUTPUT IN BYTES
+  size?: number,
+  targetSize?: number,
+  videoBitrate?: number,
+  skipped?: boolean,
+  // NOTE: SKIPPED THE ENCODE, BUT COPIED THE STREAMS INTO A NEW MP4 (CONTAINER OR AUDIO CHANGE)
+  remuxed?: boolean,
+  cached?: boolean
+};
+
+// NOTE: EVERY PART IS OPTIONAL. ALL OF THEM ARE APPLIED IN ONE DECODE/ENCODE PASS
+export type processOptions = {
+  trim?: trimSegment,
+  crop?: {
+    cropOffsetX?: number,
+    cropOffsetY?: number,
+    cropWidth: number,
+    cropHeight: number
+  },
+  scale?: {
+    width: number,
+    height: number
+  },
+  encoder?: {
+    preset?: string,
+    tune?: string,
+    crf?: number,
+    removeAudio?: boolean
+  },
+
+  priority?: jobPriority,
+  threads?: number,
+  cache?: boolean,
+  jobId?: string
+};
+
+export type progressEvent = {
+  jobId: string,
+  percent: number,
+  time: number,
+  duration: number,
+  fps: number,
+  speed: number,
+  size: number
+};
+
+export type segmentEvent = {
+  jobId: string,
+  index: number,
+  source: string,
+  startTime: number,
+  endTime: number
+};
+
+export type probeResult = {
+  size: { width: number, height: number },
+  duration: number,
+  orientation: number,
+  videoCodec: ?string,
+  audioCodec: ?string,
+  hasAudio: boolean,
+  bitrate: number,
+  fps: number,
+  fileSize: number,
+  keyframeInterval: number
+};
+
+export type previewImagesOptions = {
+  count?: number,
+  width?: number,
+  height?: number,
+  startTime?: number,
+  endTime?: number,
+  format?: format,
+  quality?: number,
+  cache?: boolean
+};
+
+export type storyboardOptions = {
+  ...previewImagesOptions,
+  columns?: number,
+  priority?: jobPriority,
+  threads?: number,
+  jobId?: string
+};
+
+export type storyboardTile = {
+  index: number,
+  time: number,
+  x: number,
+  y: number
+};
+
+export type storyboard = {
+  source: string,
+  index: string,
+  jobId: string,
+  columns: number,
+  rows: number,
+  tileWidth: number,
+  tileHeight: number,
+  tiles: Array<storyboardTile>
+};
+
+export type previewImagesStreamOptions = {
+  ...previewImagesOptions,
+  requestId?: string
+};
+
+export type previewImageEvent = {
+  requestId: string,
+  index: number,
+  time: number,
+  image: string
+};
+
+export type previewImagesCompleteEvent = {
+  requestId: string,
+  count: number,
+  cancelled: boolean
+};
+
+export type ffmpegDiagnostics = {
+  ready: boolean,
+  path: string,
+  abi: ?string,
+  supportedAbis: Array<string>,
+  sha1?: string,
+  size?: number,
+  versionCode?: number
+};
+
 declare class RNTrimmerManager {
-  static trim(source: string, options: trimOptions): Promise<{ source: string }>;
-  static compress(source: string, options: any): Promise<*>;
+  static trim(source: string, options: trimOptions): Promise<trimResult>;
+  static trimSegments(source: string, segments: Array<trimSegment>, options: trimSegmentsOptions): Promise<{ sources: Array<string>, jobId: string }>;
+  static compress(source: string, options: compressOptions): Promise<compressResult>;
   static getVideoInfo(source: string): Promise<*>;
-  static getPreviewImages(source: string): Promise<*>;
+  static probe(source: string): Promise<probeResult>;
+  static getPreviewImages(source: string, options: previewImagesOptions): Promise<{ images: Array<string> }>;
+  static getPreviewImagesStream(source: string, options: previewImagesStreamOptions): Promise<previewImagesCompleteEvent>;
+  static getPreviewStoryboard(source: string, options: storyboardOptions): Promise<storyboard>;
+  static cancelPreviewImages(requestId: string): Promise<{ requestId: string, cancelled: boolean }>;
   static getPreviewImageAtPosition(source: string, second: number): Promise<{ image: string }>;
   static crop(source: string, options: cropOptions): Promise<{ source: string }>;
+  static process(source: string, options: processOptions): Promise<{ source: string, width?: number, height?: number }>;
+  static cancel(jobId: string): Promise<{ jobId: string, cancelled: boolean }>;
+  static loadFfmpeg(): void;
+  static isFfmpegReady(): Promise<boolean>;
+  static whenFfmpegReady(): Promise<boolean>;
+  static getFfmpegDiagnostics(): Promise<ffmpegDiagnostics>;
 }
@@ -189,7 +189,7 @@ export class Trimmer extends Component {
 
   _retrivePreviewImages() {
     TrimmerManager
-      .getPreviewImages(this.props.source)
+      .getPreviewImages(this.props.source, {})
       .then(({ images }) => {
         this.setState({ images });
       })
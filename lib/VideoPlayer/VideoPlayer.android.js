@@ -127,11 +127,11 @@ export class VideoPlayer extends Component {
     });
   }
 
-  getPreviewForSecond(forSecond = 0) {
+  getPreviewForSecond(forSecond = 0, accuracy = 'keyframe') {
     UIManager.dispatchViewManagerCommand(
       findNodeHandle(this),
       ProcessingUI.Commands.getPreviewForSecond,
-      [forSecond],
+      [forSecond, accuracy],
     );
     return new Promise((resolve) => {
       this.getPreviewForSecondResolves.push(resolve);